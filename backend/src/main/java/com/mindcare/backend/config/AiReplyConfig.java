@@ -0,0 +1,22 @@
+package com.mindcare.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class AiReplyConfig {
+
+    /**
+     * Scheduler có giới hạn dùng cho các bước blocking (lưu MongoDB) sau khi AI trả lời ở chế độ bất đồng bộ.
+     * Việc chờ model sinh câu trả lời không chiếm thread nào (WebClient non-blocking),
+     * nên số thread ở đây chỉ cần đủ cho các thao tác ghi ngắn.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler aiReplyScheduler(@Value("${ai.reply.persist-threads:4}") int threads,
+                                      @Value("${ai.reply.persist-queue-capacity:1000}") int queueCapacity) {
+        return Schedulers.newBoundedElastic(threads, queueCapacity, "ai-reply");
+    }
+}
@@ -0,0 +1,79 @@
+package com.mindcare.backend.config;
+
+import com.mindcare.backend.model.Conversation;
+import com.mindcare.backend.model.Message;
+import com.mindcare.backend.repository.ConversationRepository;
+import com.mindcare.backend.repository.MessageStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Bổ sung message_count, last_message_preview và last_sender cho các cuộc hội thoại được tạo trước khi
+ * các trường này được duy trì khi lưu tin nhắn.
+ *
+ * Chạy khi khởi động nếu {@code app.conversations.backfill-stats=true}. Chỉ xử lý các cuộc hội thoại chưa có
+ * last_sender, nên có thể chạy lại nhiều lần.
+ */
+@Component
+public class ConversationStatsBackfill {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationStatsBackfill.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final ConversationRepository conversationRepository;
+    private final MessageStore messageStore;
+    private final boolean enabled;
+
+    @Autowired
+    public ConversationStatsBackfill(MongoTemplate mongoTemplate,
+                                     ConversationRepository conversationRepository,
+                                     MessageStore messageStore,
+                                     @Value("${app.conversations.backfill-stats:false}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.conversationRepository = conversationRepository;
+        this.messageStore = messageStore;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            backfillAll();
+        }
+    }
+
+    public void backfillAll() {
+        Query missingStats = Query.query(Criteria.where("lastSender").exists(false));
+        missingStats.fields().include("id");
+        logger.info("Conversation stats backfill started");
+        long updated = 0;
+        try (Stream<Conversation> conversations = mongoTemplate.stream(missingStats, Conversation.class)) {
+            for (Conversation conversation : (Iterable<Conversation>) conversations::iterator) {
+                try {
+                    backfillConversation(conversation.getId());
+                    updated++;
+                } catch (Exception e) {
+                    logger.error("Conversation stats backfill failed for ConvID: {}. Error: {}", conversation.getId(), e.getMessage(), e);
+                }
+            }
+        }
+        logger.info("Conversation stats backfill finished: {} conversation(s) updated", updated);
+    }
+
+    public void backfillConversation(String conversationId) {
+        long messageCount = messageStore.count(conversationId);
+        List<Message> latest = messageStore.findLatest(conversationId, 1);
+        conversationRepository.overwriteMessageStats(conversationId, messageCount, latest.isEmpty() ? null : latest.get(0));
+    }
+}
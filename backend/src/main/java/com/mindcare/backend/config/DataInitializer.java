@@ -1,9 +1,7 @@
 package com.mindcare.backend.config; // Hoặc package bạn chọn
 
 import com.mindcare.backend.enums.ERole;
-import com.mindcare.backend.model.Role;
 import com.mindcare.backend.model.User;
-import com.mindcare.backend.repository.RoleRepository;
 import com.mindcare.backend.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,7 +13,6 @@ import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
-import java.util.Optional;
 import java.util.Set;
 
 @Component
@@ -23,7 +20,6 @@ public class DataInitializer implements CommandLineRunner {
 
     private static final Logger logger = LoggerFactory.getLogger(DataInitializer.class);
 
-    private final RoleRepository roleRepository;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
 
@@ -38,10 +34,8 @@ public class DataInitializer implements CommandLineRunner {
 
 
     @Autowired
-    public DataInitializer(RoleRepository roleRepository,
-                           UserRepository userRepository,
+    public DataInitializer(UserRepository userRepository,
                            PasswordEncoder passwordEncoder) {
-        this.roleRepository = roleRepository;
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
     }
@@ -50,10 +44,7 @@ public class DataInitializer implements CommandLineRunner {
     public void run(String... args) throws Exception {
         logger.info("Data Initializer running...");
 
-        // 1. Tạo các Roles nếu chưa tồn tại
-        createRoleIfNotFound(ERole.ROLE_USER);
-        Role adminRoleEntity = createRoleIfNotFound(ERole.ROLE_ADMIN);
-        Role userRoleEntity = roleRepository.findByName(ERole.ROLE_USER).orElse(null); // Lấy lại ROLE_USER để gán cho admin
+        // 1. Các Roles được RoleRegistry tạo (nếu chưa tồn tại) khi khởi động
 
         // 2. Tạo tài khoản Admin mặc định nếu chưa tồn tại
         if (!userRepository.existsByUsername(adminUsername)) {
@@ -62,13 +53,9 @@ public class DataInitializer implements CommandLineRunner {
             adminUser.setPassword(passwordEncoder.encode(adminPassword));
             // adminUser.setAvatarUrl(adminAvatarUrl); // Nếu có
 
-            Set<Role> roles = new HashSet<>();
-            if (adminRoleEntity != null) {
-                roles.add(adminRoleEntity);
-            }
-            if (userRoleEntity != null) { // Admin cũng có thể là một USER bình thường
-                roles.add(userRoleEntity);
-            }
+            Set<ERole> roles = new HashSet<>();
+            roles.add(ERole.ROLE_ADMIN);
+            roles.add(ERole.ROLE_USER); // Admin cũng có thể là một USER bình thường
             adminUser.setRoles(roles);
             adminUser.setCreatedAt(LocalDateTime.now());
             adminUser.setUpdatedAt(LocalDateTime.now());
@@ -80,17 +67,4 @@ public class DataInitializer implements CommandLineRunner {
         }
         logger.info("Data Initializer finished.");
     }
-
-    private Role createRoleIfNotFound(ERole roleName) {
-        Optional<Role> roleOpt = roleRepository.findByName(roleName);
-        if (roleOpt.isEmpty()) {
-            Role newRole = new Role(roleName);
-            Role savedRole = roleRepository.save(newRole);
-            logger.info("Role {} created.", roleName);
-            return savedRole;
-        } else {
-            logger.info("Role {} already exists.", roleName);
-            return roleOpt.get();
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.mindcare.backend.config;
+
+import com.mindcare.backend.repository.EmotionRollupRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tính lại collection "emotion_rollups" từ daily_emotion_logs.
+ *
+ * Chạy trong lúc khởi tạo context (trước khi web server nhận request, vì thống kê đọc các tháng trọn vẹn từ rollup):
+ * - tự động khi đã có log nhưng chưa có rollup nào (lần triển khai đầu tiên);
+ * - luôn chạy nếu {@code app.emotions.rollups.rebuild-on-startup=true}, vd: sau khi bật lại
+ *   {@code app.emotions.rollups.enabled} (trong lúc tắt, rollup không được cập nhật).
+ * Log được ghi trong lúc rebuild đang chạy có thể bị đếm hai lần; chạy lại rebuild sẽ sửa.
+ */
+@Component
+public class EmotionRollupRebuild {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmotionRollupRebuild.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final EmotionRollupRepository emotionRollupRepository;
+    private final boolean enabled;
+    private final boolean rebuildOnStartup;
+
+    @Autowired
+    public EmotionRollupRebuild(MongoTemplate mongoTemplate,
+                                EmotionRollupRepository emotionRollupRepository,
+                                @Value("${app.emotions.rollups.enabled:true}") boolean enabled,
+                                @Value("${app.emotions.rollups.rebuild-on-startup:false}") boolean rebuildOnStartup) {
+        this.mongoTemplate = mongoTemplate;
+        this.emotionRollupRepository = emotionRollupRepository;
+        this.enabled = enabled;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    @PostConstruct
+    void rebuildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        if (rebuildOnStartup || (emotionRollupRepository.count() == 0
+                && mongoTemplate.exists(new Query(), "daily_emotion_logs"))) {
+            rebuildAll();
+        }
+    }
+
+    public long rebuildAll() {
+        logger.info("Emotion rollup rebuild started");
+        long written = emotionRollupRepository.rebuildAll();
+        logger.info("Emotion rollup rebuild finished: {} user-month rollup(s) written", written);
+        return written;
+    }
+}
@@ -0,0 +1,116 @@
+package com.mindcare.backend.config;
+
+import com.mindcare.backend.model.Message;
+import com.mindcare.backend.model.MessageBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Chuyển dữ liệu từ collection "messages" sang "message_buckets" (bucket pattern).
+ *
+ * Chạy khi khởi động nếu {@code app.messages.migrate-to-buckets=true}. Mỗi cuộc hội thoại được chuyển trọn vẹn;
+ * cuộc hội thoại đã có bucket thì bỏ qua, nên có thể chạy lại sau khi bị gián đoạn.
+ * Collection "messages" không bị xóa: sau khi kiểm tra, đặt app.messages.storage=bucket và xóa thủ công.
+ */
+@Component
+public class MessageBucketMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageBucketMigration.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final int bucketSize;
+
+    @Autowired
+    public MessageBucketMigration(MongoTemplate mongoTemplate,
+                                  @Value("${app.messages.migrate-to-buckets:false}") boolean enabled,
+                                  @Value("${app.messages.bucket-size:100}") int bucketSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.bucketSize = bucketSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            migrateAll();
+        }
+    }
+
+    public void migrateAll() {
+        List<String> conversationIds = mongoTemplate.findDistinct(new Query(), "conversationId", Message.class, String.class);
+        logger.info("Message bucket migration started: {} conversation(s) to check, bucket size {}", conversationIds.size(), bucketSize);
+        int migratedConversations = 0;
+        long migratedMessages = 0;
+        for (String conversationId : conversationIds) {
+            try {
+                long migrated = migrateConversation(conversationId);
+                if (migrated > 0) {
+                    migratedConversations++;
+                    migratedMessages += migrated;
+                }
+            } catch (Exception e) {
+                logger.error("Message bucket migration failed for ConvID: {}. Error: {}", conversationId, e.getMessage(), e);
+            }
+        }
+        logger.info("Message bucket migration finished: {} conversation(s), {} message(s) migrated", migratedConversations, migratedMessages);
+    }
+
+    /**
+     * Chuyển tin nhắn của một cuộc hội thoại. Trả về số tin nhắn đã chuyển (0 nếu cuộc hội thoại đã có bucket).
+     */
+    public long migrateConversation(String conversationId) {
+        Query byConversation = Query.query(Criteria.where("conversationId").is(conversationId));
+        if (mongoTemplate.exists(byConversation, MessageBucket.class)) {
+            logger.debug("ConvID: {} already has message buckets, skipping", conversationId);
+            return 0;
+        }
+
+        Query messagesQuery = Query.query(Criteria.where("conversationId").is(conversationId))
+                .with(Sort.by(Sort.Direction.ASC, "timestamp").and(Sort.by(Sort.Direction.ASC, "id")));
+        List<MessageBucket> buckets = new ArrayList<>();
+        MessageBucket current = null;
+        long migrated = 0;
+        try (Stream<Message> messages = mongoTemplate.stream(messagesQuery, Message.class)) {
+            for (Message message : (Iterable<Message>) messages::iterator) {
+                if (current == null || current.getCount() >= bucketSize) {
+                    current = newBucket(conversationId);
+                    buckets.add(current);
+                }
+                message.setTimestamp(message.getTimestamp().truncatedTo(ChronoUnit.MILLIS));
+                current.getMessages().add(MessageBucket.Entry.from(message));
+                current.setCount(current.getCount() + 1);
+                if (current.getFirstTimestamp() == null) {
+                    current.setFirstTimestamp(message.getTimestamp());
+                }
+                current.setLastTimestamp(message.getTimestamp());
+                migrated++;
+            }
+        }
+        if (!buckets.isEmpty()) {
+            mongoTemplate.insertAll(buckets);
+        }
+        logger.info("Migrated {} message(s) of ConvID: {} into {} bucket(s)", migrated, conversationId, buckets.size());
+        return migrated;
+    }
+
+    private static MessageBucket newBucket(String conversationId) {
+        MessageBucket bucket = new MessageBucket();
+        bucket.setConversationId(conversationId);
+        return bucket;
+    }
+}
@@ -0,0 +1,156 @@
+package com.mindcare.backend.config;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Quản lý index MongoDB khi ứng dụng khởi động.
+ *
+ * Spring Boot không tự tạo index từ annotation (spring.data.mongodb.auto-index-creation mặc định là false),
+ * nên lớp này đọc các @Indexed/@CompoundIndex của các entity và đảm bảo chúng tồn tại, sau đó ghi log:
+ * - index không được dùng kể từ lần khởi động gần nhất của MongoDB ($indexStats, accesses.ops = 0);
+ * - index thừa: các khóa của nó là tiền tố của một index khác (vd: {conversation_id: 1} so với {conversation_id: 1, timestamp: 1}).
+ * Index thừa chỉ được báo cáo, không bị xóa tự động.
+ */
+@Component
+public class MongoIndexManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexManager.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+
+    @Autowired
+    public MongoIndexManager(MongoTemplate mongoTemplate,
+                             @Value("${app.mongo.index-management.enabled:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE) // Trước các tác vụ khởi động khác đọc dữ liệu
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        Set<String> collections = ensureDeclaredIndexes();
+        for (String collection : collections) {
+            try {
+                reportIndexUsage(collection);
+            } catch (Exception e) {
+                logger.warn("Could not build index report for collection {}: {}", collection, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Tạo (nếu chưa có) mọi index khai báo trên các entity. Trả về tên các collection đã xử lý.
+     */
+    public Set<String> ensureDeclaredIndexes() {
+        MongoPersistentEntityIndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        Set<String> collections = new TreeSet<>();
+        for (MongoPersistentEntity<?> entity : mongoTemplate.getConverter().getMappingContext().getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) {
+                continue;
+            }
+            String collection = entity.getCollection();
+            collections.add(collection);
+            IndexOperations indexOps = mongoTemplate.indexOps(collection);
+            for (IndexDefinition index : resolver.resolveIndexFor(entity.getTypeInformation())) {
+                try {
+                    String name = indexOps.ensureIndex(index);
+                    logger.info("Index {} on {} verified: {}", name, collection, index.getIndexKeys().toJson());
+                } catch (Exception e) {
+                    // Vd: index unique trên dữ liệu đang bị trùng, hoặc index cùng tên nhưng khác định nghĩa
+                    logger.error("Failed to ensure index {} on {}: {}", index.getIndexKeys().toJson(), collection, e.getMessage());
+                }
+            }
+        }
+        return collections;
+    }
+
+    /**
+     * Ghi log các index không được dùng và các index thừa của một collection.
+     */
+    public void reportIndexUsage(String collection) {
+        List<Document> indexes = mongoTemplate.getCollection(collection).listIndexes().into(new ArrayList<>());
+
+        for (Document stats : mongoTemplate.getCollection(collection)
+                .aggregate(List.of(new Document("$indexStats", new Document())))) {
+            String name = stats.getString("name");
+            Document accesses = stats.get("accesses", Document.class);
+            long ops = accesses != null && accesses.get("ops") != null ? ((Number) accesses.get("ops")).longValue() : -1;
+            if (ops == 0 && !"_id_".equals(name)) {
+                Date since = accesses.getDate("since");
+                logger.info("Index report [{}]: index {} has not been used since {}", collection, name, since);
+            }
+        }
+
+        for (Document index : indexes) {
+            Document redundantTo = findCoveringIndex(index, indexes);
+            if (redundantTo != null) {
+                logger.warn("Index report [{}]: index {} {} is redundant with {} {} and can be dropped",
+                        collection, index.getString("name"), index.get("key", Document.class).toJson(),
+                        redundantTo.getString("name"), redundantTo.get("key", Document.class).toJson());
+            }
+        }
+    }
+
+    // Index "thừa" nếu khóa của nó là tiền tố của một index dài hơn (và nó không có ràng buộc riêng như unique/TTL/partial)
+    private static Document findCoveringIndex(Document index, List<Document> allIndexes) {
+        if ("_id_".equals(index.getString("name")) || index.getBoolean("unique", false)
+                || index.containsKey("expireAfterSeconds") || index.containsKey("partialFilterExpression")
+                || index.containsKey("sparse")) {
+            return null;
+        }
+        List<Map.Entry<String, Object>> keys = new ArrayList<>(index.get("key", Document.class).entrySet());
+        for (Document other : allIndexes) {
+            if (other == index || other.containsKey("partialFilterExpression")) {
+                continue;
+            }
+            List<Map.Entry<String, Object>> otherKeys = new ArrayList<>(other.get("key", Document.class).entrySet());
+            if (otherKeys.size() > keys.size() && isPrefix(keys, otherKeys)) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isPrefix(List<Map.Entry<String, Object>> prefix, List<Map.Entry<String, Object>> keys) {
+        for (int i = 0; i < prefix.size(); i++) {
+            Map.Entry<String, Object> a = prefix.get(i);
+            Map.Entry<String, Object> b = keys.get(i);
+            if (!a.getKey().equals(b.getKey()) || !sameDirection(a.getValue(), b.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameDirection(Object a, Object b) {
+        if (a instanceof Number na && b instanceof Number nb) {
+            return Math.signum(na.doubleValue()) == Math.signum(nb.doubleValue());
+        }
+        return a.equals(b); // "text", "2dsphere", "hashed"...
+    }
+}
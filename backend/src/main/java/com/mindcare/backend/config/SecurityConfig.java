@@ -3,6 +3,7 @@ package com.mindcare.backend.config;
 import com.mindcare.backend.security.jwt.AuthEntryPointJwt;
 import com.mindcare.backend.security.jwt.JwtAuthenticationFilter;
 import com.mindcare.backend.security.services.UserDetailsServiceImpl;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -85,7 +86,11 @@ public class SecurityConfig {
                 .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler))
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                        // Các dispatch ASYNC (SSE stream câu trả lời AI) đã được xác thực ở request ban đầu
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         .requestMatchers("/api/auth/**").permitAll() // Cho phép tất cả truy cập vào /api/auth/**
+                        .requestMatchers("/actuator/health").permitAll()
+                        .requestMatchers("/actuator/**").hasRole("ADMIN") // Metrics chỉ dành cho admin
                         // .requestMatchers("/api/test/all").permitAll() // Ví dụ endpoint public khác
                         .requestMatchers("/api/admin/**").hasRole("ADMIN") // YÊU CẦU ROLE_ADMIN CHO /api/admin/**
                         .anyRequest().authenticated() // Tất cả các request khác cần phải xác thực
@@ -0,0 +1,109 @@
+package com.mindcare.backend.config;
+
+import com.mindcare.backend.enums.ERole;
+import com.mindcare.backend.security.services.RoleRegistry;
+import com.mongodb.DBRef;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Chuyển trường "roles" (mảng @DBRef tới collection "roles") của các user cũ thành "role_names" (tên ERole).
+ *
+ * Chạy một lần trong lúc khởi tạo context, trước khi web server nhận request, vì User không còn đọc
+ * trường "roles": user chưa được chuyển sẽ không có quyền nào. Chỉ xử lý document còn trường "roles",
+ * nên các lần khởi động sau chỉ tốn một truy vấn rỗng. Tắt bằng {@code app.users.migrate-embedded-roles=false}.
+ */
+@Component
+public class UserRoleMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserRoleMigration.class);
+
+    private static final String COLLECTION = "users";
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final RoleRegistry roleRegistry;
+    private final boolean enabled;
+
+    @Autowired
+    public UserRoleMigration(MongoTemplate mongoTemplate,
+                             RoleRegistry roleRegistry,
+                             @Value("${app.users.migrate-embedded-roles:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.roleRegistry = roleRegistry;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    void migrateOnStartup() {
+        if (enabled) {
+            migrateAll();
+        }
+    }
+
+    public long migrateAll() {
+        Query legacyUsers = Query.query(Criteria.where("roles").exists(true));
+        legacyUsers.fields().include("roles");
+
+        long migrated = 0;
+        BulkOperations bulk = null;
+        int pending = 0;
+        try (Stream<Document> users = mongoTemplate.stream(legacyUsers, Document.class, COLLECTION)) {
+            for (Document user : (Iterable<Document>) users::iterator) {
+                if (bulk == null) {
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+                }
+                Update update = new Update()
+                        .set("role_names", roleNamesOf(user))
+                        .unset("roles");
+                bulk.updateOne(Query.query(Criteria.where("_id").is(user.get("_id"))), update);
+                pending++;
+                if (pending == BATCH_SIZE) {
+                    bulk.execute();
+                    migrated += pending;
+                    bulk = null;
+                    pending = 0;
+                }
+            }
+        }
+        if (bulk != null) {
+            bulk.execute();
+            migrated += pending;
+        }
+        if (migrated > 0) {
+            logger.info("Migrated embedded role names for {} user(s)", migrated);
+        }
+        return migrated;
+    }
+
+    private List<String> roleNamesOf(Document user) {
+        Set<String> names = new LinkedHashSet<>();
+        List<?> refs = user.getList("roles", Object.class);
+        if (refs != null) {
+            for (Object ref : refs) {
+                if (ref instanceof DBRef dbRef) {
+                    roleRegistry.findById(dbRef.getId().toString())
+                            .map(ERole::name)
+                            .ifPresentOrElse(names::add, () -> logger.warn("User {} references unknown role {}, dropping it",
+                                    user.get("_id"), dbRef.getId()));
+                }
+            }
+        }
+        return List.copyOf(names);
+    }
+}
@@ -1,13 +1,21 @@
 package com.mindcare.backend.controller;
 
+import com.mindcare.backend.dto.admin.AdminUserPageDto;
 import com.mindcare.backend.dto.admin.AdminUserUpdateRequestDto;
 import com.mindcare.backend.dto.admin.AdminUserViewDto;
+import com.mindcare.backend.dto.admin.EmotionCohortTrendDto;
+import com.mindcare.backend.dto.admin.EmotionDailyShareDto;
+import com.mindcare.backend.dto.admin.NegativeStreakDto;
+import com.mindcare.backend.dto.admin.UserDeletionJobDto;
 import com.mindcare.backend.dto.conversation.ConversationDto;
 import com.mindcare.backend.dto.emotion.EmotionStatsResponseDto;
 import com.mindcare.backend.dto.response.MessageResponse;
 import com.mindcare.backend.dto.conversation.MessageDto;
+import com.mindcare.backend.dto.conversation.MessagePageDto;
+import com.mindcare.backend.exception.BadRequestException;
 import com.mindcare.backend.exception.ResourceNotFoundException;
 import com.mindcare.backend.service.interfaces.AdminService;
+import com.mindcare.backend.service.interfaces.EmotionAnalyticsService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,19 +37,37 @@ public class AdminController {
 
     private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
     private final AdminService adminService;
+    private final EmotionAnalyticsService emotionAnalyticsService;
 
     @Autowired
-    public AdminController(AdminService adminService) {
+    public AdminController(AdminService adminService, EmotionAnalyticsService emotionAnalyticsService) {
         this.adminService = adminService;
+        this.emotionAnalyticsService = emotionAnalyticsService;
     }
 
     /**
-     * Admin: Lấy danh sách tất cả người dùng.
+     * Admin: Lấy danh sách người dùng.
+     * Có q/page/size/sort thì trả về theo trang (AdminUserPageDto), không có thì trả về toàn bộ danh sách như cũ.
      */
     @GetMapping("/users")
-    public ResponseEntity<List<AdminUserViewDto>> getAllUsers() {
-        List<AdminUserViewDto> users = adminService.getAllUsers();
-        return ResponseEntity.ok(users);
+    public ResponseEntity<?> getAllUsers(@RequestParam(value = "q", required = false) String usernamePrefix,
+                                         @RequestParam(value = "page", required = false) Integer page,
+                                         @RequestParam(value = "size", required = false) Integer size,
+                                         @RequestParam(value = "sort", required = false) String sort) {
+        try {
+            if (usernamePrefix != null || page != null || size != null || sort != null) {
+                AdminUserPageDto usersPage = adminService.getUsersPage(usernamePrefix, page, size, sort);
+                return ResponseEntity.ok(usersPage);
+            }
+            List<AdminUserViewDto> users = adminService.getAllUsers();
+            return ResponseEntity.ok(users);
+        } catch (BadRequestException e) {
+            logger.warn("Invalid admin user listing request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error fetching users for admin:", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new MessageResponse("Lỗi: Không thể lấy danh sách người dùng."));
+        }
     }
 
     /**
@@ -84,12 +110,14 @@ public class AdminController {
 
     /**
      * Admin: Xóa một người dùng và tất cả dữ liệu liên quan.
+     * User bị xóa (không đăng nhập được) ngay; dữ liệu được xóa nền: trả về 202 cùng trạng thái tác vụ,
+     * theo dõi tiến độ qua GET /users/{userId}/deletion.
      */
     @DeleteMapping("/users/{userId}")
     public ResponseEntity<?> deleteUserAndData(@PathVariable String userId) {
         try {
-            adminService.deleteUserAndAssociatedData(userId);
-            return ResponseEntity.ok(new MessageResponse("Người dùng và dữ liệu liên quan đã được xóa thành công."));
+            UserDeletionJobDto job = adminService.deleteUserAndAssociatedData(userId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
         } catch (ResourceNotFoundException e) {
             logger.warn("Admin attempt to delete non-existent user: {}", userId, e);
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse(e.getMessage()));
@@ -116,6 +144,22 @@ public class AdminController {
         }
     }
 
+    /**
+     * Admin: Xem trạng thái và tiến độ tác vụ xóa một người dùng.
+     */
+    @GetMapping("/users/{userId}/deletion")
+    public ResponseEntity<?> getUserDeletionJob(@PathVariable String userId) {
+        try {
+            UserDeletionJobDto job = adminService.getUserDeletionJob(userId);
+            return ResponseEntity.ok(job);
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error fetching deletion job for user ID {}:", userId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new MessageResponse("Lỗi: Không thể lấy trạng thái xóa người dùng."));
+        }
+    }
+
     /**
      * Admin: Xem thống kê cảm xúc của một người dùng cụ thể trong một khoảng thời gian.
      */
@@ -139,13 +183,79 @@ public class AdminController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new MessageResponse("Lỗi: Không thể lấy thống kê cảm xúc."));
         }
     }
-    // Admin: Xem chi tiết tất cả tin nhắn của một cuộc hội thoại cụ thể.
+
+    /**
+     * Admin: Tỉ lệ từng cảm xúc theo ngày trên toàn hệ thống (startDate, endDate tính cả hai đầu).
+     */
+    @GetMapping("/analytics/emotions/daily")
+    public ResponseEntity<?> getDailyEmotionShares(
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        try {
+            List<EmotionDailyShareDto> shares = emotionAnalyticsService.getDailyEmotionShares(startDate, endDate);
+            return ResponseEntity.ok(shares);
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error computing daily emotion shares from {} to {}:", startDate, endDate, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new MessageResponse("Lỗi: Không thể lấy thống kê cảm xúc theo ngày."));
+        }
+    }
+
+    /**
+     * Admin: Xu hướng cảm xúc theo tháng của từng nhóm người dùng (nhóm = tháng đăng ký).
+     */
+    @GetMapping("/analytics/emotions/cohorts")
+    public ResponseEntity<?> getCohortEmotionTrends(
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        try {
+            List<EmotionCohortTrendDto> trends = emotionAnalyticsService.getCohortTrends(startDate, endDate);
+            return ResponseEntity.ok(trends);
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error computing cohort emotion trends from {} to {}:", startDate, endDate, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new MessageResponse("Lỗi: Không thể lấy xu hướng cảm xúc theo nhóm người dùng."));
+        }
+    }
+
+    /**
+     * Admin: Những người dùng có chuỗi ngày cảm xúc tiêu cực liên tiếp dài nhất (ít nhất minDays ngày, tối đa limit người).
+     */
+    @GetMapping("/analytics/emotions/negative-streaks")
+    public ResponseEntity<?> getNegativeEmotionStreaks(
+            @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(value = "minDays", required = false) Integer minDays,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        try {
+            List<NegativeStreakDto> streaks = emotionAnalyticsService.getNegativeStreaks(startDate, endDate, minDays, limit);
+            return ResponseEntity.ok(streaks);
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error computing negative emotion streaks from {} to {}:", startDate, endDate, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new MessageResponse("Lỗi: Không thể lấy chuỗi ngày cảm xúc tiêu cực."));
+        }
+    }
+    // Admin: Xem chi tiết tất cả tin nhắn của một cuộc hội thoại cụ thể (có before/after/limit thì trả về theo trang).
     @GetMapping("/conversations/{conversationId}/messages")
-    public ResponseEntity<?> getMessagesForConversationAsAdmin(@PathVariable String conversationId) {
+    public ResponseEntity<?> getMessagesForConversationAsAdmin(
+            @PathVariable String conversationId,
+            @RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
         logger.info("Admin request: Get messages for ConversationID: {}", conversationId);
         try {
+            if (before != null || after != null || limit != null) {
+                MessagePageDto page = adminService.getMessagesForConversationPage(conversationId, before, after, limit);
+                return ResponseEntity.ok(page);
+            }
             List<MessageDto> messages = adminService.getMessagesForConversation(conversationId);
             return ResponseEntity.ok(messages);
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
         } catch (ResourceNotFoundException e) {
             logger.warn("Admin request failed for ConversationID {}: {}", conversationId, e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse(e.getMessage()));
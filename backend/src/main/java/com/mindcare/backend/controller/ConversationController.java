@@ -1,10 +1,14 @@
 package com.mindcare.backend.controller;
 
+import com.mindcare.backend.dto.conversation.AiReplyStatusDto;
 import com.mindcare.backend.dto.conversation.ConversationDto;
 import com.mindcare.backend.dto.conversation.CreateConversationRequestDto; // Import DTO mới
 import com.mindcare.backend.dto.conversation.MessageDto;
+import com.mindcare.backend.dto.conversation.MessagePageDto;
 import com.mindcare.backend.dto.conversation.MessageRequest;
+import com.mindcare.backend.dto.conversation.MessageStreamEventDto;
 import com.mindcare.backend.dto.response.MessageResponse; // Để trả về thông báo lỗi chung
+import com.mindcare.backend.exception.BadRequestException;
 import com.mindcare.backend.exception.ResourceNotFoundException;
 import com.mindcare.backend.security.services.UserDetailsImpl;
 import com.mindcare.backend.service.interfaces.ConversationService;
@@ -13,10 +17,13 @@ import org.slf4j.LoggerFactory;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.Optional;
@@ -133,20 +140,106 @@ public class ConversationController {
         }
     }
 
+    /**
+     * Gửi một tin nhắn mới và nhận câu trả lời của AI dưới dạng Server-Sent Events.
+     * Các sự kiện: "user_message", nhiều "token", rồi "done" (tin nhắn AI đã lưu) hoặc "error".
+     */
+    @PostMapping("/{conversationId}/messages/stream")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<?> streamUserMessage(
+            @AuthenticationPrincipal UserDetailsImpl currentUser,
+            @PathVariable String conversationId,
+            @Valid @RequestBody MessageRequest messageRequest) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new MessageResponse("Lỗi: Người dùng chưa được xác thực."));
+        }
+        try {
+            Flux<ServerSentEvent<MessageStreamEventDto>> events = conversationService
+                    .streamUserMessage(currentUser.getId(), conversationId, messageRequest)
+                    .map(event -> ServerSentEvent.builder(event).event(event.getType()).build());
+            return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(events);
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error opening message stream for user {} in conversation {}: {}", currentUser.getId(), conversationId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new MessageResponse("Lỗi: Không thể gửi tin nhắn."));
+        }
+    }
+
+    /**
+     * Gửi một tin nhắn mới ở chế độ bất đồng bộ: trả về 202 ngay sau khi lưu tin nhắn của người dùng.
+     * Client poll câu trả lời AI qua GET /{conversationId}/messages/{messageId}/reply.
+     */
+    @PostMapping("/{conversationId}/messages/async")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<?> saveUserMessageAsync(
+            @AuthenticationPrincipal UserDetailsImpl currentUser,
+            @PathVariable String conversationId,
+            @Valid @RequestBody MessageRequest messageRequest) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new MessageResponse("Lỗi: Người dùng chưa được xác thực."));
+        }
+        try {
+            MessageDto savedMessage = conversationService.saveUserMessageAsync(currentUser.getId(), conversationId, messageRequest);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(savedMessage);
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error saving async message for user {} in conversation {}: {}", currentUser.getId(), conversationId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new MessageResponse("Lỗi: Không thể gửi tin nhắn."));
+        }
+    }
+
+    /**
+     * Lấy trạng thái câu trả lời AI cho một tin nhắn đã gửi ở chế độ bất đồng bộ.
+     * Trả về 202 khi AI vẫn đang trả lời, 200 khi đã hoàn thành hoặc thất bại.
+     */
+    @GetMapping("/{conversationId}/messages/{messageId}/reply")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<?> getAiReplyStatus(
+            @AuthenticationPrincipal UserDetailsImpl currentUser,
+            @PathVariable String conversationId,
+            @PathVariable String messageId) {
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new MessageResponse("Lỗi: Người dùng chưa được xác thực."));
+        }
+        try {
+            AiReplyStatusDto replyStatus = conversationService.getAiReplyStatus(currentUser.getId(), conversationId, messageId);
+            HttpStatus status = AiReplyStatusDto.PENDING.equals(replyStatus.getStatus()) ? HttpStatus.ACCEPTED : HttpStatus.OK;
+            return ResponseEntity.status(status).body(replyStatus);
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error fetching AI reply status for message {} in conversation {}: {}", messageId, conversationId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new MessageResponse("Lỗi: Không thể lấy trạng thái phản hồi của AI."));
+        }
+    }
+
     /**
      * Lấy lịch sử tin nhắn của một cuộc hội thoại.
+     * Không có tham số: trả về toàn bộ danh sách (giữ tương thích với client cũ).
+     * Có before/after/limit: trả về một trang (MessagePageDto) theo cursor để tải dần khi cuộn.
      */
     @GetMapping("/{conversationId}/messages")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<?> getConversationMessages(
             @AuthenticationPrincipal UserDetailsImpl currentUser,
-            @PathVariable String conversationId) {
+            @PathVariable String conversationId,
+            @RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
         if (currentUser == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new MessageResponse("Lỗi: Người dùng chưa được xác thực."));
         }
         try {
+            if (before != null || after != null || limit != null) {
+                MessagePageDto page = conversationService.getConversationMessagesPage(currentUser.getId(), conversationId, before, after, limit);
+                return ResponseEntity.ok(page);
+            }
             List<MessageDto> messages = conversationService.getConversationMessages(currentUser.getId(), conversationId);
             return ResponseEntity.ok(messages);
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().body(new MessageResponse(e.getMessage()));
         } catch (ResourceNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new MessageResponse(e.getMessage()));
         } catch (Exception e) {
@@ -21,8 +21,6 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal; //
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate; // Import LocalDate
-import java.util.List;
-import java.util.Map;
 
 @CrossOrigin(origins = "*", maxAge = 3600) // Cân nhắc dùng cấu hình CORS global trong SecurityConfig
 @RestController
@@ -128,13 +126,15 @@ public class UserController {
 
     /**
      * Lấy lịch sử và thống kê tóm tắt cảm xúc của người dùng hiện tại trong một khoảng thời gian.
+     * includeLogs=false: chỉ trả về thống kê (tính trên MongoDB), không tải danh sách log.
      */
     @GetMapping("/me/emotions/daily/stats")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<?> getDailyEmotionStats(
             @AuthenticationPrincipal UserDetailsImpl currentUser,
             @RequestParam("startDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam("endDate") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(value = "includeLogs", defaultValue = "true") boolean includeLogs) {
         if (currentUser == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new MessageResponse("Lỗi: Người dùng chưa được xác thực."));
         }
@@ -143,10 +143,8 @@ public class UserController {
             return ResponseEntity.badRequest().body(new MessageResponse("Lỗi: Ngày bắt đầu và kết thúc không hợp lệ."));
         }
         try {
-            List<DailyEmotionLogDto> dailyLogs = dailyEmotionLogService.getEmotionLogsForPeriod(currentUser.getId(), startDate, endDate);
-            Map<String, Long> summary = dailyEmotionLogService.getEmotionStatsSummary(currentUser.getId(), startDate, endDate);
-
-            EmotionStatsResponseDto responseDto = new EmotionStatsResponseDto(dailyLogs, summary);
+            EmotionStatsResponseDto responseDto = dailyEmotionLogService.getEmotionStats(
+                    currentUser.getId(), startDate, endDate, includeLogs);
             return ResponseEntity.ok(responseDto);
         } catch (Exception e) {
             // Log lỗi chi tiết ở server
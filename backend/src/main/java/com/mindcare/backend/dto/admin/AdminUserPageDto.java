@@ -0,0 +1,19 @@
+package com.mindcare.backend.dto.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdminUserPageDto {
+    private List<AdminUserViewDto> users;
+    private int page;           // Số trang hiện tại (bắt đầu từ 0)
+    private int size;           // Kích thước trang
+    private long totalElements; // Tổng số người dùng khớp bộ lọc
+    private int totalPages;
+    private boolean hasNext;
+}
@@ -0,0 +1,19 @@
+package com.mindcare.backend.dto.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmotionCohortTrendDto {
+    private String cohort;            // Tháng đăng ký của nhóm người dùng ("yyyy-MM")
+    private String period;            // Tháng ghi log ("yyyy-MM")
+    private long activeUsers;         // Số người dùng của nhóm có ghi log trong tháng
+    private long totalLogs;
+    private Map<String, Long> counts; // Số log theo cảm xúc
+    private double negativeShare;     // Tỉ lệ (0..1) log có cảm xúc tiêu cực
+}
@@ -0,0 +1,18 @@
+package com.mindcare.backend.dto.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmotionDailyShareDto {
+    private LocalDate date;
+    private long totalLogs;              // Tổng số log của mọi người dùng trong ngày
+    private Map<String, Long> counts;    // Số log theo cảm xúc
+    private Map<String, Double> shares;  // Tỉ lệ (0..1) của mỗi cảm xúc trong ngày
+}
@@ -0,0 +1,18 @@
+package com.mindcare.backend.dto.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NegativeStreakDto {
+    private String userId;
+    private String username;    // null nếu người dùng đã bị xóa
+    private int streakDays;     // Số ngày liên tiếp dài nhất có cảm xúc tiêu cực trong khoảng thời gian
+    private LocalDate startDate;
+    private LocalDate endDate;
+}
@@ -0,0 +1,24 @@
+package com.mindcare.backend.dto.admin;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserDeletionJobDto {
+    private String jobId;
+    private String userId;
+    private String username;
+    private String status;              // PENDING, RUNNING, COMPLETED hoặc FAILED
+    private long conversationsTotal;
+    private long conversationsDeleted;
+    private int attempts;
+    private String lastError;           // Lỗi của lần chạy gần nhất (nếu FAILED)
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime completedAt;
+}
@@ -1,5 +1,7 @@
 package com.mindcare.backend.dto.ai;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -9,13 +11,16 @@ import java.util.Map;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL) // Không gửi các trường null (format, options, keep_alive) cho Ollama
 public class OllamaChatRequest {
     private String model;                       // Tên model trong Ollama
     private List<OllamaChatMessage> messages;   // Lịch sử tin nhắn và tin nhắn hiện tại
     private String format;                      // Tùy chọn: "json" để yêu cầu output là JSON (nếu model hỗ trợ)
-    private Map<String, Object> options;
+    private Map<String, Object> options;        // Tùy chọn của model (num_ctx, num_keep, temperature...)
     private boolean stream = false;             // Mặc định là false để nhận response hoàn chỉnh
     // private String template;                 // Tùy chọn: Template cho prompt
     // private String system;                   // Tùy chọn: System prompt (có thể đặt trong messages với role "system")
-    // private boolean keep_alive;              // Tùy chọn: Giữ model trong memory
-}
\ No newline at end of file
+
+    @JsonProperty("keep_alive")
+    private String keepAlive;                   // Thời gian giữ model trong memory sau request (ví dụ: "30m", "-1" = luôn giữ)
+}
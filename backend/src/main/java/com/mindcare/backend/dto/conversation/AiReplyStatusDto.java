@@ -0,0 +1,19 @@
+package com.mindcare.backend.dto.conversation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AiReplyStatusDto {
+    public static final String PENDING = "PENDING";     // AI đang sinh câu trả lời
+    public static final String COMPLETED = "COMPLETED"; // Đã có tin nhắn AI
+    public static final String FAILED = "FAILED";       // Không thể lấy phản hồi từ AI
+
+    private String userMessageId;  // ID tin nhắn của người dùng mà câu trả lời này thuộc về
+    private String status;         // PENDING, COMPLETED hoặc FAILED
+    private MessageDto reply;      // Tin nhắn AI (khi COMPLETED)
+    private String error;          // Thông báo lỗi (khi FAILED)
+}
@@ -16,4 +16,7 @@ public class ConversationDto {
     private String aiModel; // Model AI được sử dụng
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt; // Thời điểm cập nhật cuối (ví dụ, khi có tin nhắn mới)
+    private long messageCount;
+    private String lastMessagePreview; // Đoạn đầu của tin nhắn mới nhất
+    private String lastSender; // "USER" hoặc "AI"
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.mindcare.backend.dto.conversation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessagePageDto {
+    private List<MessageDto> messages; // Các tin nhắn của trang, sắp xếp theo thời gian tăng dần
+    private String beforeCursor;       // Truyền vào ?before= để tải các tin nhắn cũ hơn (null nếu trang rỗng)
+    private String afterCursor;        // Truyền vào ?after= để tải các tin nhắn mới hơn (null nếu trang rỗng)
+    private boolean hasMore;           // Còn tin nhắn theo hướng vừa đọc (cũ hơn với before/mặc định, mới hơn với after)
+}
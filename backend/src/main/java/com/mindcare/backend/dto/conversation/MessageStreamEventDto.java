@@ -0,0 +1,35 @@
+package com.mindcare.backend.dto.conversation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageStreamEventDto {
+    public static final String USER_MESSAGE = "user_message"; // Tin nhắn của người dùng đã được lưu
+    public static final String TOKEN = "token";               // Một đoạn câu trả lời vừa được AI sinh ra
+    public static final String DONE = "done";                 // AI trả lời xong, tin nhắn AI đã được lưu
+    public static final String ERROR = "error";               // Lỗi trong quá trình sinh câu trả lời
+
+    private String type;         // Loại sự kiện (một trong các hằng số ở trên)
+    private String content;      // Nội dung token (TOKEN) hoặc thông báo lỗi (ERROR)
+    private MessageDto message;  // Tin nhắn đã lưu (USER_MESSAGE, DONE)
+
+    public static MessageStreamEventDto userMessage(MessageDto message) {
+        return new MessageStreamEventDto(USER_MESSAGE, null, message);
+    }
+
+    public static MessageStreamEventDto token(String content) {
+        return new MessageStreamEventDto(TOKEN, content, null);
+    }
+
+    public static MessageStreamEventDto done(MessageDto message) {
+        return new MessageStreamEventDto(DONE, null, message);
+    }
+
+    public static MessageStreamEventDto error(String content) {
+        return new MessageStreamEventDto(ERROR, content, null);
+    }
+}
@@ -0,0 +1,8 @@
+package com.mindcare.backend.enums;
+
+public enum EDeletionStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
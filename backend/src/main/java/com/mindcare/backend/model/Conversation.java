@@ -1,7 +1,7 @@
 package com.mindcare.backend.model;
 
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -9,13 +9,14 @@ import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Document(collection = "conversations")
+// Phục vụ findByUserIdOrderByUpdatedAtDesc / findSidebarByUserId (lọc theo user, sắp xếp theo updated_at giảm dần) mà không phải sort trong bộ nhớ
+@CompoundIndex(name = "user_updated_idx", def = "{'user_id': 1, 'updated_at': -1}")
 public class Conversation {
 
     @Id
     private String id;
 
     @Field("user_id")
-    @Indexed
     private String userId;
 
     @Field("title")
@@ -28,9 +29,19 @@ public class Conversation {
     private LocalDateTime createdAt;
 
     @Field("updated_at")
-    @Indexed
     private LocalDateTime updatedAt;
 
+    // Số tin nhắn của cuộc hội thoại, được tăng nguyên tử ($inc) mỗi khi lưu tin nhắn mới
+    @Field("message_count")
+    private long messageCount;
+
+    // Đoạn đầu của tin nhắn mới nhất và người gửi, để danh sách hội thoại hiển thị được mà không cần đọc tin nhắn
+    @Field("last_message_preview")
+    private String lastMessagePreview;
+
+    @Field("last_sender")
+    private String lastSender;
+
     // No-argument constructor
     public Conversation() {
         this.createdAt = LocalDateTime.now();
@@ -104,6 +115,30 @@ public class Conversation {
         this.updatedAt = updatedAt;
     }
 
+    public long getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(long messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public String getLastMessagePreview() {
+        return lastMessagePreview;
+    }
+
+    public void setLastMessagePreview(String lastMessagePreview) {
+        this.lastMessagePreview = lastMessagePreview;
+    }
+
+    public String getLastSender() {
+        return lastSender;
+    }
+
+    public void setLastSender(String lastSender) {
+        this.lastSender = lastSender;
+    }
+
     // equals() and hashCode()
     @Override
     public boolean equals(Object o) {
@@ -128,6 +163,8 @@ public class Conversation {
                 ", aiModel='" + aiModel + '\'' +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
+                ", messageCount=" + messageCount +
+                ", lastSender='" + lastSender + '\'' +
                 '}';
     }
 }
\ No newline at end of file
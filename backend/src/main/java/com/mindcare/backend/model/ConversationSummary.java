@@ -0,0 +1,122 @@
+package com.mindcare.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Bản tóm tắt cuốn chiếu của các lượt cũ trong một cuộc hội thoại.
+ * summarizedUntil là checkpoint: mọi tin nhắn có timestamp <= checkpoint đã nằm trong bản tóm tắt.
+ */
+@Document(collection = "conversation_summaries")
+public class ConversationSummary {
+
+    @Id
+    private String id;
+
+    @Field("conversation_id")
+    @Indexed(unique = true)
+    private String conversationId;
+
+    @Field("summary")
+    private String summary;
+
+    @Field("summarized_until")
+    private LocalDateTime summarizedUntil;
+
+    @Field("summarized_message_count")
+    private long summarizedMessageCount;
+
+    @Field("updated_at")
+    private LocalDateTime updatedAt;
+
+    // No-argument constructor
+    public ConversationSummary() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Constructor tùy chỉnh
+    public ConversationSummary(String conversationId) {
+        this();
+        this.conversationId = conversationId;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public LocalDateTime getSummarizedUntil() {
+        return summarizedUntil;
+    }
+
+    public void setSummarizedUntil(LocalDateTime summarizedUntil) {
+        this.summarizedUntil = summarizedUntil;
+    }
+
+    public long getSummarizedMessageCount() {
+        return summarizedMessageCount;
+    }
+
+    public void setSummarizedMessageCount(long summarizedMessageCount) {
+        this.summarizedMessageCount = summarizedMessageCount;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    // equals() and hashCode()
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ConversationSummary that = (ConversationSummary) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    // toString()
+    @Override
+    public String toString() {
+        return "ConversationSummary{" +
+                "id='" + id + '\'' +
+                ", conversationId='" + conversationId + '\'' +
+                ", summarizedUntil=" + summarizedUntil +
+                ", summarizedMessageCount=" + summarizedMessageCount +
+                ", updatedAt=" + updatedAt +
+                '}';
+    }
+}
@@ -12,6 +12,8 @@ import java.util.Objects;
 
 @Document(collection = "daily_emotion_logs")
 @CompoundIndex(name = "user_date_emotion_idx", def = "{'user_id' : 1, 'log_date': 1}", unique = true)
+// Thống kê trên toàn bộ người dùng của admin: lọc theo khoảng ngày (và cảm xúc) không có user_id
+@CompoundIndex(name = "date_emotion_idx", def = "{'log_date': 1, 'emotion': 1}")
 public class DailyEmotionLog {
 
     @Id
@@ -0,0 +1,110 @@
+package com.mindcare.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Số ngày ghi nhận mỗi cảm xúc của một người dùng trong một tháng, được cộng dồn ($inc) mỗi khi
+ * DailyEmotionLog thay đổi. Thống kê theo khoảng dài đọc các tháng trọn vẹn từ đây thay vì từ daily_emotion_logs.
+ *
+ * Khóa của counts là tên cảm xúc đã được mã hóa (xem EmotionRollupRepositoryImpl) vì tên cảm xúc do client gửi
+ * có thể chứa '.' hoặc '$'. Đọc qua EmotionRollupRepository.sumCounts để có tên gốc.
+ */
+@Document(collection = "emotion_rollups")
+@CompoundIndex(name = "user_year_month_idx", def = "{'user_id': 1, 'year_month': 1}", unique = true)
+public class EmotionRollup {
+
+    @Id
+    private String id;
+
+    @Field("user_id")
+    private String userId;
+
+    // Dạng "yyyy-MM" (YearMonth.toString()), so sánh chuỗi đúng thứ tự thời gian
+    @Field("year_month")
+    private String yearMonth;
+
+    @Field("counts")
+    private Map<String, Long> counts = new HashMap<>();
+
+    @Field("updated_at")
+    private LocalDateTime updatedAt;
+
+    // No-argument constructor
+    public EmotionRollup() {
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getYearMonth() {
+        return yearMonth;
+    }
+
+    public void setYearMonth(String yearMonth) {
+        this.yearMonth = yearMonth;
+    }
+
+    public Map<String, Long> getCounts() {
+        return counts;
+    }
+
+    public void setCounts(Map<String, Long> counts) {
+        this.counts = counts;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    // equals() and hashCode()
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        EmotionRollup that = (EmotionRollup) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    // toString()
+    @Override
+    public String toString() {
+        return "EmotionRollup{" +
+                "id='" + id + '\'' +
+                ", userId='" + userId + '\'' +
+                ", yearMonth='" + yearMonth + '\'' +
+                ", counts=" + counts +
+                ", updatedAt=" + updatedAt +
+                '}';
+    }
+}
@@ -1,7 +1,7 @@
 package com.mindcare.backend.model;
 
 import org.springframework.data.annotation.Id;
-import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -9,13 +9,14 @@ import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Document(collection = "messages")
+// Mọi truy vấn đều là "conversation_id = ? sắp xếp theo timestamp"; _id ở cuối để phân trang keyset (timestamp, _id) không phải sort
+@CompoundIndex(name = "conversation_timestamp_idx", def = "{'conversation_id': 1, 'timestamp': 1, '_id': 1}")
 public class Message {
 
     @Id
     private String id;
 
     @Field("conversation_id")
-    @Indexed
     private String conversationId;
 
     @Field("sender") // "USER" hoặc "AI"
@@ -25,7 +26,6 @@ public class Message {
     private String content;
 
     @Field("timestamp")
-    @Indexed
     private LocalDateTime timestamp;
 
     // No-argument constructor
@@ -0,0 +1,178 @@
+package com.mindcare.backend.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Một nhóm (bucket) tối đa {@code app.messages.bucket-size} tin nhắn liên tiếp của một cuộc hội thoại.
+ * Chỉ dùng khi app.messages.storage=bucket.
+ */
+@Document(collection = "message_buckets")
+@CompoundIndexes({
+        // Tìm bucket còn chỗ khi thêm tin nhắn
+        @CompoundIndex(name = "conversation_count_idx", def = "{'conversation_id': 1, 'count': 1}"),
+        // Đọc các bucket mới nhất trước (history, ngữ cảnh AI)
+        @CompoundIndex(name = "conversation_last_ts_idx", def = "{'conversation_id': 1, 'last_ts': -1}"),
+        // Đọc theo chiều thời gian tăng dần (tóm tắt, phân trang với cursor after)
+        @CompoundIndex(name = "conversation_first_ts_idx", def = "{'conversation_id': 1, 'first_ts': 1}")
+})
+public class MessageBucket {
+
+    @Id
+    private String id;
+
+    @Field("conversation_id")
+    private String conversationId;
+
+    @Field("count")
+    private int count;
+
+    @Field("first_ts")
+    private LocalDateTime firstTimestamp;
+
+    @Field("last_ts")
+    private LocalDateTime lastTimestamp;
+
+    @Field("messages")
+    private List<Entry> messages = new ArrayList<>();
+
+    public MessageBucket() {
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public LocalDateTime getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public void setFirstTimestamp(LocalDateTime firstTimestamp) {
+        this.firstTimestamp = firstTimestamp;
+    }
+
+    public LocalDateTime getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public void setLastTimestamp(LocalDateTime lastTimestamp) {
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    public List<Entry> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<Entry> messages) {
+        this.messages = messages;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MessageBucket that = (MessageBucket) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    /**
+     * Một tin nhắn nằm trong bucket (conversation_id được lưu một lần ở bucket).
+     */
+    public static class Entry {
+
+        @Id
+        private String id;
+
+        @Field("sender")
+        private String sender;
+
+        @Field("content")
+        private String content;
+
+        @Field("timestamp")
+        private LocalDateTime timestamp;
+
+        public Entry() {
+        }
+
+        public Entry(String id, String sender, String content, LocalDateTime timestamp) {
+            this.id = id;
+            this.sender = sender;
+            this.content = content;
+            this.timestamp = timestamp;
+        }
+
+        public static Entry from(Message message) {
+            return new Entry(message.getId(), message.getSender(), message.getContent(), message.getTimestamp());
+        }
+
+        public Message toMessage(String conversationId) {
+            return new Message(id, conversationId, sender, content, timestamp);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getSender() {
+            return sender;
+        }
+
+        public void setSender(String sender) {
+            this.sender = sender;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public void setContent(String content) {
+            this.content = content;
+        }
+
+        public LocalDateTime getTimestamp() {
+            return timestamp;
+        }
+
+        public void setTimestamp(LocalDateTime timestamp) {
+            this.timestamp = timestamp;
+        }
+    }
+}
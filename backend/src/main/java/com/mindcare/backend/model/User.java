@@ -1,8 +1,9 @@
 package com.mindcare.backend.model;
 
+import com.mindcare.backend.enums.ERole;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
-import org.springframework.data.mongodb.core.mapping.DBRef;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -10,10 +11,11 @@ import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 
 @Document(collection = "users")
+// Sắp xếp danh sách người dùng của admin theo ngày tạo (_id phân định các user tạo cùng thời điểm)
+@CompoundIndex(name = "created_at_id_idx", def = "{'created_at': 1, '_id': 1}")
 public class User {
 
     @Id
@@ -29,9 +31,18 @@ public class User {
     @Field("avatar_url")
     private String avatarUrl;
 
-    @DBRef
-    @Field("roles")
-    private Set<Role> roles = new HashSet<>();
+    // Tên vai trò lưu trực tiếp trong document (trước đây là @DBRef tới collection "roles",
+    // mỗi lần đọc User tốn thêm truy vấn để resolve; xem UserRoleMigration)
+    @Field("role_names")
+    private Set<ERole> roles = new HashSet<>();
+
+    // Tăng mỗi khi cần thu hồi các JWT đã cấp (đổi/đặt lại mật khẩu, đổi vai trò); được ghi vào claim "tv" của token
+    @Field("token_version")
+    private long tokenVersion;
+
+    // true khi admin đã yêu cầu xóa user: dữ liệu đang được xóa nền (UserDeletionJob), user coi như không còn tồn tại
+    @Field("deleted")
+    private boolean deleted;
 
     @Field("created_at")
     private LocalDateTime createdAt;
@@ -97,14 +108,22 @@ public class User {
         this.avatarUrl = avatarUrl;
     }
 
-    public Set<Role> getRoles() {
+    public Set<ERole> getRoles() {
         return roles;
     }
 
-    public void setRoles(Set<Role> roles) {
+    public void setRoles(Set<ERole> roles) {
         this.roles = roles;
     }
 
+    public long getTokenVersion() {
+        return tokenVersion;
+    }
+
+    public void setTokenVersion(long tokenVersion) {
+        this.tokenVersion = tokenVersion;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -113,6 +132,14 @@ public class User {
         this.createdAt = createdAt;
     }
 
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
     public LocalDateTime getUpdatedAt() {
         return updatedAt;
     }
@@ -142,7 +169,8 @@ public class User {
                 ", username='" + username + '\'' +
                 // ", password='[PROTECTED]'" + // Không nên log password
                 ", avatarUrl='" + avatarUrl + '\'' +
-                ", roles=" + (roles != null ? roles.stream().map(role -> role.getName().name()).collect(Collectors.toSet()) : "null") +
+                ", roles=" + roles +
+                ", deleted=" + deleted +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
                 '}';
@@ -0,0 +1,197 @@
+package com.mindcare.backend.model;
+
+import com.mindcare.backend.enums.EDeletionStatus;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Tác vụ xóa một người dùng và toàn bộ dữ liệu của họ, chạy nền (xem UserDeletionServiceImpl).
+ *
+ * User được đánh dấu deleted ngay khi tác vụ được tạo; dữ liệu được xóa dần theo từng nhóm cuộc hội thoại và
+ * tiến độ được ghi lại sau mỗi nhóm. updated_at đồng thời là nhịp "còn sống" của instance đang chạy tác vụ:
+ * tác vụ RUNNING quá lâu không cập nhật được coi là bị bỏ dở (instance đã dừng) và được chạy tiếp.
+ */
+@Document(collection = "user_deletion_jobs")
+// Tìm các tác vụ cần chạy tiếp: PENDING, hoặc RUNNING nhưng updated_at đã cũ
+@CompoundIndex(name = "status_updated_idx", def = "{'status': 1, 'updated_at': 1}")
+public class UserDeletionJob {
+
+    @Id
+    private String id;
+
+    // Mỗi user có tối đa một tác vụ
+    @Field("user_id")
+    @Indexed(unique = true)
+    private String userId;
+
+    @Field("username")
+    private String username;
+
+    @Field("status")
+    private EDeletionStatus status;
+
+    // Số cuộc hội thoại tại thời điểm tạo tác vụ (để tính phần trăm tiến độ)
+    @Field("conversations_total")
+    private long conversationsTotal;
+
+    @Field("conversations_deleted")
+    private long conversationsDeleted;
+
+    // Số lần tác vụ được bắt đầu (lớn hơn 1 nếu đã được chạy tiếp hoặc chạy lại sau lỗi)
+    @Field("attempts")
+    private int attempts;
+
+    @Field("last_error")
+    private String lastError;
+
+    @Field("created_at")
+    private LocalDateTime createdAt;
+
+    @Field("updated_at")
+    private LocalDateTime updatedAt;
+
+    // Tác vụ đã xong được MongoDB tự xóa sau 30 ngày (index TTL)
+    @Field("completed_at")
+    @Indexed(name = "completed_at_ttl_idx", expireAfter = "30d")
+    private LocalDateTime completedAt;
+
+    // No-argument constructor
+    public UserDeletionJob() {
+    }
+
+    public UserDeletionJob(String userId, String username, long conversationsTotal) {
+        this.userId = userId;
+        this.username = username;
+        this.conversationsTotal = conversationsTotal;
+        this.status = EDeletionStatus.PENDING;
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public EDeletionStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(EDeletionStatus status) {
+        this.status = status;
+    }
+
+    public long getConversationsTotal() {
+        return conversationsTotal;
+    }
+
+    public void setConversationsTotal(long conversationsTotal) {
+        this.conversationsTotal = conversationsTotal;
+    }
+
+    public long getConversationsDeleted() {
+        return conversationsDeleted;
+    }
+
+    public void setConversationsDeleted(long conversationsDeleted) {
+        this.conversationsDeleted = conversationsDeleted;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    // equals() and hashCode()
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        UserDeletionJob that = (UserDeletionJob) o;
+        return Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+
+    // toString()
+    @Override
+    public String toString() {
+        return "UserDeletionJob{" +
+                "id='" + id + '\'' +
+                ", userId='" + userId + '\'' +
+                ", username='" + username + '\'' +
+                ", status=" + status +
+                ", conversationsTotal=" + conversationsTotal +
+                ", conversationsDeleted=" + conversationsDeleted +
+                ", attempts=" + attempts +
+                ", lastError='" + lastError + '\'' +
+                ", createdAt=" + createdAt +
+                ", updatedAt=" + updatedAt +
+                ", completedAt=" + completedAt +
+                '}';
+    }
+}
@@ -0,0 +1,193 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.Message;
+import com.mindcare.backend.model.MessageBucket;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Lưu tin nhắn theo bucket pattern: mỗi document "message_buckets" chứa tối đa bucketSize tin nhắn liên tiếp.
+ *
+ * - Thêm tin nhắn = một lệnh upsert: $push vào bucket còn chỗ của cuộc hội thoại, hoặc tạo bucket mới nếu đã đầy.
+ * - Đọc các tin nhắn gần nhất chỉ chạm vào một vài bucket (đọc từ bucket mới nhất và dừng khi đã đủ tin nhắn).
+ *
+ * Khi hai request ghi đồng thời, có thể xuất hiện hai bucket chưa đầy với khoảng thời gian chồng lên nhau;
+ * các truy vấn đọc dựa trên first_ts/last_ts của bucket nên vẫn trả về đúng thứ tự.
+ */
+@Component
+@ConditionalOnProperty(name = "app.messages.storage", havingValue = "bucket")
+public class BucketMessageStore implements MessageStore {
+
+    private static final Comparator<Message> CHRONOLOGICAL =
+            Comparator.comparing(Message::getTimestamp).thenComparing(Message::getId);
+
+    private final MongoTemplate mongoTemplate;
+    private final int bucketSize;
+
+    @Autowired
+    public BucketMessageStore(MongoTemplate mongoTemplate,
+                              @Value("${app.messages.bucket-size:100}") int bucketSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.bucketSize = bucketSize;
+    }
+
+    @Override
+    public Message append(Message message) {
+        Message stored = prepare(message);
+        mongoTemplate.upsert(openBucketOf(stored), pushUpdate(stored), MessageBucket.class);
+        return stored;
+    }
+
+    // ID và timestamp được gán ở phía ứng dụng (MongoDB lưu Date với độ chính xác mili giây)
+    private Message prepare(Message message) {
+        LocalDateTime timestamp = (message.getTimestamp() != null ? message.getTimestamp() : LocalDateTime.now())
+                .truncatedTo(ChronoUnit.MILLIS);
+        return new Message(new ObjectId().toHexString(), message.getConversationId(),
+                message.getSender(), message.getContent(), timestamp);
+    }
+
+    private Query openBucketOf(Message message) {
+        return Query.query(Criteria.where("conversationId").is(message.getConversationId())
+                .and("count").lt(bucketSize));
+    }
+
+    private Update pushUpdate(Message message) {
+        return new Update()
+                .push("messages", MessageBucket.Entry.from(message))
+                .inc("count", 1)
+                .min("firstTimestamp", message.getTimestamp())
+                .max("lastTimestamp", message.getTimestamp());
+    }
+
+    @Override
+    public Optional<Message> findById(String conversationId, String messageId) {
+        Query query = Query.query(Criteria.where("conversationId").is(conversationId).and("messages.id").is(messageId));
+        return Optional.ofNullable(mongoTemplate.findOne(query, MessageBucket.class))
+                .flatMap(bucket -> bucket.getMessages().stream()
+                        .filter(entry -> messageId.equals(entry.getId()))
+                        .findFirst()
+                        .map(entry -> entry.toMessage(conversationId)));
+    }
+
+    @Override
+    public Optional<Message> findFirstAfter(String conversationId, LocalDateTime timestamp) {
+        List<Message> next = scan(conversationId, Criteria.where("lastTimestamp").gt(timestamp), false,
+                message -> message.getTimestamp().isAfter(timestamp), 1);
+        return next.stream().findFirst();
+    }
+
+    @Override
+    public List<Message> findAll(String conversationId) {
+        return scan(conversationId, null, false, message -> true, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Message> findLatest(String conversationId, int limit) {
+        return scan(conversationId, null, true, message -> true, limit);
+    }
+
+    @Override
+    public List<Message> findBetween(String conversationId, LocalDateTime from, LocalDateTime to, int limit) {
+        Criteria overlapsRange = new Criteria().andOperator(
+                Criteria.where("lastTimestamp").gt(from), Criteria.where("firstTimestamp").lt(to));
+        return scan(conversationId, overlapsRange, false,
+                message -> message.getTimestamp().isAfter(from) && message.getTimestamp().isBefore(to), limit);
+    }
+
+    @Override
+    public List<Message> findPage(String conversationId, MessageCursor before, MessageCursor after, int limit) {
+        if (after != null) {
+            Message cursor = new Message(after.id(), conversationId, null, null, after.timestamp());
+            return scan(conversationId, Criteria.where("lastTimestamp").gte(after.timestamp()), false,
+                    message -> CHRONOLOGICAL.compare(message, cursor) > 0, limit + 1);
+        }
+        List<Message> newestFirst;
+        if (before != null) {
+            Message cursor = new Message(before.id(), conversationId, null, null, before.timestamp());
+            newestFirst = scan(conversationId, Criteria.where("firstTimestamp").lte(before.timestamp()), true,
+                    message -> CHRONOLOGICAL.compare(message, cursor) < 0, limit + 1);
+        } else {
+            newestFirst = scan(conversationId, null, true, message -> true, limit + 1);
+        }
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    @Override
+    public long count(String conversationId) {
+        Query query = Query.query(Criteria.where("conversationId").is(conversationId));
+        query.fields().include("count");
+        return mongoTemplate.find(query, MessageBucket.class).stream().mapToLong(MessageBucket::getCount).sum();
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        mongoTemplate.remove(Query.query(Criteria.where("conversationId").is(conversationId)), MessageBucket.class);
+    }
+
+    @Override
+    public void deleteByConversationIds(Collection<String> conversationIds) {
+        mongoTemplate.remove(Query.query(Criteria.where("conversationId").in(conversationIds)), MessageBucket.class);
+    }
+
+    /**
+     * Đọc các bucket theo thứ tự thời gian (mới trước nếu newestFirst) và dừng khi đã có đủ limit tin nhắn
+     * chắc chắn đứng trước mọi tin nhắn của bucket kế tiếp. Kết quả theo thứ tự đọc (mới trước nếu newestFirst).
+     */
+    private List<Message> scan(String conversationId, Criteria bucketRange, boolean newestFirst,
+                               Predicate<Message> filter, int limit) {
+        Query query = Query.query(Criteria.where("conversationId").is(conversationId));
+        if (bucketRange != null) {
+            query.addCriteria(bucketRange);
+        }
+        query.with(newestFirst ? Sort.by(Sort.Direction.DESC, "lastTimestamp") : Sort.by(Sort.Direction.ASC, "firstTimestamp"));
+
+        List<Message> collected = new ArrayList<>();
+        try (Stream<MessageBucket> buckets = mongoTemplate.stream(query, MessageBucket.class)) {
+            Iterator<MessageBucket> iterator = buckets.iterator();
+            while (iterator.hasNext()) {
+                MessageBucket bucket = iterator.next();
+                if (collected.size() >= limit && countAhead(collected, bucket, newestFirst) >= limit) {
+                    break;
+                }
+                for (MessageBucket.Entry entry : bucket.getMessages()) {
+                    Message message = entry.toMessage(conversationId);
+                    if (filter.test(message)) {
+                        collected.add(message);
+                    }
+                }
+            }
+        }
+        collected.sort(newestFirst ? CHRONOLOGICAL.reversed() : CHRONOLOGICAL);
+        return collected.size() > limit ? new ArrayList<>(collected.subList(0, limit)) : collected;
+    }
+
+    // Số tin nhắn đã đọc nằm hẳn bên ngoài khoảng thời gian của bucket (bucket không thể chen vào trước chúng)
+    private static long countAhead(List<Message> collected, MessageBucket bucket, boolean newestFirst) {
+        return collected.stream()
+                .filter(message -> newestFirst
+                        ? message.getTimestamp().isAfter(bucket.getLastTimestamp())
+                        : message.getTimestamp().isBefore(bucket.getFirstTimestamp()))
+                .count();
+    }
+}
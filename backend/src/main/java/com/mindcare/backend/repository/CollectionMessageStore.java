@@ -0,0 +1,86 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Lưu mỗi tin nhắn thành một document trong collection "messages" (cách lưu mặc định).
+ */
+@Component
+@ConditionalOnProperty(name = "app.messages.storage", havingValue = "collection", matchIfMissing = true)
+public class CollectionMessageStore implements MessageStore {
+
+    private final MessageRepository messageRepository;
+
+    @Autowired
+    public CollectionMessageStore(MessageRepository messageRepository) {
+        this.messageRepository = messageRepository;
+    }
+
+    @Override
+    public Message append(Message message) {
+        // Tin nhắn luôn là document mới: insert, không cần save (replace theo _id)
+        return messageRepository.insert(message);
+    }
+
+    @Override
+    public Optional<Message> findById(String conversationId, String messageId) {
+        return messageRepository.findById(messageId)
+                .filter(message -> conversationId.equals(message.getConversationId()));
+    }
+
+    @Override
+    public Optional<Message> findFirstAfter(String conversationId, LocalDateTime timestamp) {
+        return messageRepository.findFirstByConversationIdAndTimestampAfterOrderByTimestampAsc(conversationId, timestamp);
+    }
+
+    @Override
+    public List<Message> findAll(String conversationId) {
+        return messageRepository.findByConversationIdOrderByTimestampAsc(conversationId);
+    }
+
+    @Override
+    public List<Message> findLatest(String conversationId, int limit) {
+        // findPage không có cursor trả về trang mới nhất (tăng dần, có thể thừa một phần tử ở đầu)
+        List<Message> page = messageRepository.findPageByConversationId(conversationId, null, null, limit);
+        List<Message> newestFirst = new ArrayList<>(page.subList(Math.max(0, page.size() - limit), page.size()));
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    @Override
+    public List<Message> findBetween(String conversationId, LocalDateTime from, LocalDateTime to, int limit) {
+        return messageRepository.findByConversationIdAndTimestampBetweenOrderByTimestampAsc(
+                conversationId, from, to, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<Message> findPage(String conversationId, MessageCursor before, MessageCursor after, int limit) {
+        return messageRepository.findPageByConversationId(conversationId, before, after, limit);
+    }
+
+    @Override
+    public long count(String conversationId) {
+        return messageRepository.countByConversationId(conversationId);
+    }
+
+    @Override
+    public void deleteByConversationId(String conversationId) {
+        messageRepository.deleteAllByConversationId(conversationId);
+    }
+
+    @Override
+    public void deleteByConversationIds(Collection<String> conversationIds) {
+        messageRepository.deleteAllByConversationIdIn(conversationIds);
+    }
+}
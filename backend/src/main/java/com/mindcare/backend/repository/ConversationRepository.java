@@ -2,13 +2,14 @@ package com.mindcare.backend.repository;
 
 import com.mindcare.backend.model.Conversation;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 
 @Repository // Đánh dấu đây là một Spring Data repository
-public interface ConversationRepository extends MongoRepository<Conversation, String> {
+public interface ConversationRepository extends MongoRepository<Conversation, String>, ConversationRepositoryCustom {
 
     /**
      * Tìm tất cả các cuộc hội thoại của một người dùng cụ thể,
@@ -19,6 +20,19 @@ public interface ConversationRepository extends MongoRepository<Conversation, St
      */
     List<Conversation> findByUserIdOrderByUpdatedAtDesc(String userId);
 
+    /**
+     * Danh sách hội thoại cho sidebar: cùng điều kiện và thứ tự như findByUserIdOrderByUpdatedAtDesc
+     * (dùng index user_updated_idx), nhưng chỉ lấy các trường cần hiển thị.
+     *
+     * @param userId ID của người dùng
+     * @return Danh sách các Conversation (chỉ có các trường trong projection)
+     */
+    @Query(value = "{ 'user_id': ?0 }",
+            fields = "{ 'user_id': 1, 'title': 1, 'ai_model': 1, 'created_at': 1, 'updated_at': 1, " +
+                    "'message_count': 1, 'last_message_preview': 1, 'last_sender': 1 }",
+            sort = "{ 'updated_at': -1 }")
+    List<Conversation> findSidebarByUserId(String userId);
+
     /**
      * Tìm một cuộc hội thoại cụ thể bằng ID và ID của người dùng.
      * Hữu ích để đảm bảo người dùng chỉ có thể truy cập vào cuộc hội thoại của chính họ.
@@ -28,4 +42,6 @@ public interface ConversationRepository extends MongoRepository<Conversation, St
      * @return Optional chứa Conversation nếu tìm thấy và thuộc về người dùng
      */
     Optional<Conversation> findByIdAndUserId(String id, String userId);
+
+    long countByUserId(String userId);
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.Conversation;
+import com.mindcare.backend.model.Message;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Các cập nhật Conversation dạng nguyên tử ($set/$inc) thay vì ghi đè cả document bằng save().
+ * Nhờ đó các lượt chat đồng thời trong cùng một cuộc hội thoại không ghi đè kết quả của nhau.
+ */
+public interface ConversationRepositoryCustom {
+
+    /**
+     * Ghi nhận các tin nhắn mới của một lượt chat trong một lệnh update:
+     * $set updated_at, last_message_preview, last_sender (theo lastMessage) và $inc message_count.
+     *
+     * @return true nếu tìm thấy cuộc hội thoại để cập nhật
+     */
+    boolean recordNewMessages(String conversationId, int newMessages, Message lastMessage, LocalDateTime updatedAt);
+
+    /**
+     * Ghi đè message_count và tin nhắn mới nhất bằng giá trị tính lại từ MessageStore (dùng khi bổ sung dữ liệu cũ).
+     * lastMessage có thể null nếu cuộc hội thoại chưa có tin nhắn nào.
+     */
+    void overwriteMessageStats(String conversationId, long messageCount, Message lastMessage);
+
+    /**
+     * Đổi tiêu đề (chỉ khi cuộc hội thoại thuộc về userId) và trả về document sau khi cập nhật.
+     */
+    Optional<Conversation> updateTitle(String conversationId, String userId, String title, LocalDateTime updatedAt);
+
+    /**
+     * Tối đa limit ID cuộc hội thoại của một người dùng (projection chỉ _id, dùng index user_updated_idx).
+     */
+    List<String> findIdsByUserId(String userId, int limit);
+}
@@ -0,0 +1,84 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.Conversation;
+import com.mindcare.backend.model.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+// Spring Data tự ghép lớp này vào ConversationRepository (hậu tố "Impl")
+public class ConversationRepositoryImpl implements ConversationRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+    private final int previewLength;
+
+    @Autowired
+    public ConversationRepositoryImpl(MongoTemplate mongoTemplate,
+                                      @Value("${app.conversations.preview-length:120}") int previewLength) {
+        this.mongoTemplate = mongoTemplate;
+        this.previewLength = previewLength;
+    }
+
+    @Override
+    public boolean recordNewMessages(String conversationId, int newMessages, Message lastMessage, LocalDateTime updatedAt) {
+        Update update = new Update()
+                .set("updatedAt", updatedAt)
+                .set("lastMessagePreview", previewOf(lastMessage.getContent()))
+                .set("lastSender", lastMessage.getSender())
+                .inc("messageCount", newMessages);
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(conversationId)), update, Conversation.class)
+                .getMatchedCount() > 0;
+    }
+
+    @Override
+    public void overwriteMessageStats(String conversationId, long messageCount, Message lastMessage) {
+        Update update = new Update()
+                .set("messageCount", messageCount)
+                .set("lastMessagePreview", lastMessage != null ? previewOf(lastMessage.getContent()) : null)
+                .set("lastSender", lastMessage != null ? lastMessage.getSender() : null);
+        mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(conversationId)), update, Conversation.class);
+    }
+
+    @Override
+    public Optional<Conversation> updateTitle(String conversationId, String userId, String title, LocalDateTime updatedAt) {
+        Query query = Query.query(Criteria.where("id").is(conversationId).and("userId").is(userId));
+        Update update = new Update()
+                .set("title", title)
+                .set("updatedAt", updatedAt);
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Conversation.class));
+    }
+
+    @Override
+    public List<String> findIdsByUserId(String userId, int limit) {
+        Query query = Query.query(Criteria.where("userId").is(userId)).limit(limit);
+        query.fields().include("id");
+        return mongoTemplate.find(query, Conversation.class).stream()
+                .map(Conversation::getId)
+                .toList();
+    }
+
+    // Cắt nội dung tin nhắn thành một dòng xem trước (gộp khoảng trắng, không cắt đôi cặp surrogate)
+    private String previewOf(String content) {
+        if (content == null) {
+            return null;
+        }
+        String singleLine = content.strip().replaceAll("\\s+", " ");
+        if (singleLine.length() <= previewLength) {
+            return singleLine;
+        }
+        int end = previewLength;
+        if (Character.isHighSurrogate(singleLine.charAt(end - 1))) {
+            end--;
+        }
+        return singleLine.substring(0, end) + "…";
+    }
+}
@@ -0,0 +1,20 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.ConversationSummary;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Optional;
+
+@Repository
+public interface ConversationSummaryRepository extends MongoRepository<ConversationSummary, String> {
+
+    // Tìm bản tóm tắt của một cuộc hội thoại (mỗi cuộc hội thoại có tối đa một bản)
+    Optional<ConversationSummary> findByConversationId(String conversationId);
+
+    // Xóa bản tóm tắt khi cuộc hội thoại bị xóa
+    void deleteByConversationId(String conversationId);
+
+    void deleteByConversationIdIn(Collection<String> conversationIds);
+}
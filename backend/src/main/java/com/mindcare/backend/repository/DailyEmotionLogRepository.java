@@ -9,7 +9,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface DailyEmotionLogRepository extends MongoRepository<DailyEmotionLog, String> {
+public interface DailyEmotionLogRepository extends MongoRepository<DailyEmotionLog, String>, DailyEmotionLogRepositoryCustom {
 
     // Tìm kiếm một bản ghi cảm xúc hàng ngày của một người dùng cụ thể vào một ngày cụ thể.
     Optional<DailyEmotionLog> findByUserIdAndLogDate(String userId, LocalDate logDate);
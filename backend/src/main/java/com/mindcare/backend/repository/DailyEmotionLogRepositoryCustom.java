@@ -0,0 +1,45 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.DailyEmotionLog;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Ghi log cảm xúc bằng một lệnh nguyên tử và thống kê cảm xúc tính ngay trên MongoDB bằng aggregation,
+ * không tải từng DailyEmotionLog về JVM.
+ */
+public interface DailyEmotionLogRepositoryCustom {
+
+    /**
+     * Đặt cảm xúc của (userId, logDate) bằng một lệnh findAndModify upsert: $set emotion, $setOnInsert _id và created_at
+     * (lấy từ {@code log}, ID do client sinh). Hai request đồng thời cho cùng ngày không vi phạm user_date_emotion_idx.
+     *
+     * @return log trước khi cập nhật, hoặc rỗng nếu {@code log} vừa được chèn mới
+     */
+    Optional<DailyEmotionLog> upsertEmotion(DailyEmotionLog log);
+
+    /**
+     * Số ngày ghi nhận mỗi cảm xúc của người dùng, trong cùng khoảng ngày với
+     * {@link DailyEmotionLogRepository#findByUserIdAndLogDateBetweenOrderByLogDateAsc} (không gồm hai đầu mút).
+     */
+    Map<String, Long> countByEmotion(String userId, LocalDate startDate, LocalDate endDate);
+
+    // Các truy vấn trên toàn bộ người dùng dưới đây dùng khoảng ngày [from, to] (bao gồm hai đầu) và allowDiskUse.
+
+    // Số log của mỗi cảm xúc theo từng ngày, sắp xếp theo ngày
+    List<EmotionDayCounts> countByDayAndEmotion(LocalDate from, LocalDate to);
+
+    // Số log của mỗi cảm xúc theo (tháng đăng ký của người dùng, tháng ghi log); bỏ qua log của user đã bị xóa
+    List<EmotionCohortCounts> countByCohortAndMonth(LocalDate from, LocalDate to);
+
+    /**
+     * Các ngày có cảm xúc thuộc {@code emotions}, sắp xếp theo (user_id, log_date), đọc dần theo cursor.
+     * Stream phải được đóng sau khi dùng (try-with-resources).
+     */
+    Stream<UserEmotionDay> streamDaysWithEmotion(LocalDate from, LocalDate to, Collection<String> emotions);
+}
@@ -0,0 +1,181 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.DailyEmotionLog;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Spring Data tự ghép lớp này vào DailyEmotionLogRepository (hậu tố "Impl")
+public class DailyEmotionLogRepositoryImpl implements DailyEmotionLogRepositoryCustom {
+
+    private static final String COLLECTION = "daily_emotion_logs";
+    private static final int STREAM_BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public DailyEmotionLogRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Optional<DailyEmotionLog> upsertEmotion(DailyEmotionLog log) {
+        Query query = Query.query(Criteria.where("userId").is(log.getUserId()).and("logDate").is(log.getLogDate()));
+        Update update = new Update()
+                .set("emotion", log.getEmotion())
+                .setOnInsert("id", log.getId())
+                .setOnInsert("createdAt", log.getCreatedAt());
+        // returnNew(false): bản cũ cho biết cảm xúc trước đó (để cập nhật rollup), null nghĩa là vừa chèn
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().upsert(true).returnNew(false), DailyEmotionLog.class));
+    }
+
+    @Override
+    public Map<String, Long> countByEmotion(String userId, LocalDate startDate, LocalDate endDate) {
+        // $match dùng index user_date_emotion_idx (user_id, log_date); $group trả về mỗi cảm xúc một document
+        TypedAggregation<DailyEmotionLog> aggregation = Aggregation.newAggregation(DailyEmotionLog.class,
+                Aggregation.match(Criteria.where("userId").is(userId).and("logDate").gt(startDate).lt(endDate)),
+                Aggregation.group("emotion").count().as("count"));
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Document group : mongoTemplate.aggregate(aggregation, Document.class).getMappedResults()) {
+            counts.put(group.getString("_id"), ((Number) group.get("count")).longValue());
+        }
+        return counts;
+    }
+
+    @Override
+    public List<EmotionDayCounts> countByDayAndEmotion(LocalDate from, LocalDate to) {
+        List<Document> pipeline = List.of(
+                new Document("$match", dateRange(from, to)),
+                new Document("$group", new Document("_id", new Document("day", formatDate("%Y-%m-%d", "$log_date"))
+                        .append("emotion", "$emotion"))
+                        .append("count", new Document("$sum", 1))),
+                new Document("$sort", new Document("_id.day", 1)));
+
+        Map<String, Map<String, Long>> countsByDay = new LinkedHashMap<>();
+        for (Document group : aggregate(pipeline)) {
+            Document key = group.get("_id", Document.class);
+            countsByDay.computeIfAbsent(key.getString("day"), day -> new LinkedHashMap<>())
+                    .put(key.getString("emotion"), ((Number) group.get("count")).longValue());
+        }
+        List<EmotionDayCounts> days = new ArrayList<>(countsByDay.size());
+        countsByDay.forEach((day, counts) -> days.add(new EmotionDayCounts(LocalDate.parse(day), counts)));
+        return days;
+    }
+
+    @Override
+    public List<EmotionCohortCounts> countByCohortAndMonth(LocalDate from, LocalDate to) {
+        // Gộp theo (user, tháng) trước: $lookup sang "users" chỉ chạy một lần cho mỗi user-tháng, không phải cho mỗi log
+        Document userObjectId = new Document("$convert", new Document("input", "$_id.user_id")
+                .append("to", "objectId").append("onError", null).append("onNull", null));
+        List<Document> pipeline = List.of(
+                new Document("$match", dateRange(from, to)),
+                new Document("$group", new Document("_id", new Document("user_id", "$user_id")
+                        .append("period", formatDate("%Y-%m", "$log_date"))
+                        .append("emotion", "$emotion"))
+                        .append("count", new Document("$sum", 1))),
+                new Document("$group", new Document("_id", new Document("user_id", "$_id.user_id")
+                        .append("period", "$_id.period"))
+                        .append("counts", new Document("$push", new Document("emotion", "$_id.emotion")
+                                .append("count", "$count")))),
+                new Document("$lookup", new Document("from", "users")
+                        .append("let", new Document("uid", userObjectId))
+                        .append("pipeline", List.of(
+                                new Document("$match", new Document("$expr", new Document("$eq", List.of("$_id", "$$uid")))),
+                                new Document("$project", new Document("_id", 0).append("created_at", 1))))
+                        .append("as", "user")),
+                new Document("$unwind", "$user"),
+                new Document("$addFields", new Document("cohort", formatDate("%Y-%m", "$user.created_at"))),
+                new Document("$facet", new Document("users", List.of(
+                        new Document("$group", new Document("_id", new Document("cohort", "$cohort").append("period", "$_id.period"))
+                                .append("active_users", new Document("$sum", 1)))))
+                        .append("emotions", List.of(
+                                new Document("$unwind", "$counts"),
+                                new Document("$group", new Document("_id", new Document("cohort", "$cohort")
+                                        .append("period", "$_id.period")
+                                        .append("emotion", "$counts.emotion"))
+                                        .append("count", new Document("$sum", "$counts.count")))))));
+
+        Map<List<String>, Long> activeUsers = new TreeMap<>(Comparator.comparing((List<String> key) -> key.get(0))
+                .thenComparing(key -> key.get(1)));
+        Map<List<String>, Map<String, Long>> counts = new HashMap<>();
+        for (Document facets : aggregate(pipeline)) {
+            for (Document group : facets.getList("users", Document.class)) {
+                Document key = group.get("_id", Document.class);
+                activeUsers.put(List.of(key.getString("cohort"), key.getString("period")),
+                        ((Number) group.get("active_users")).longValue());
+            }
+            for (Document group : facets.getList("emotions", Document.class)) {
+                Document key = group.get("_id", Document.class);
+                counts.computeIfAbsent(List.of(key.getString("cohort"), key.getString("period")), k -> new LinkedHashMap<>())
+                        .put(key.getString("emotion"), ((Number) group.get("count")).longValue());
+            }
+        }
+        List<EmotionCohortCounts> cohorts = new ArrayList<>(activeUsers.size());
+        activeUsers.forEach((key, users) -> cohorts.add(
+                new EmotionCohortCounts(key.get(0), key.get(1), users, counts.getOrDefault(key, Map.of()))));
+        return cohorts;
+    }
+
+    @Override
+    public Stream<UserEmotionDay> streamDaysWithEmotion(LocalDate from, LocalDate to, Collection<String> emotions) {
+        List<Document> pipeline = List.of(
+                new Document("$match", dateRange(from, to).append("emotion", new Document("$in", List.copyOf(emotions)))),
+                new Document("$project", new Document("_id", 0).append("user_id", 1).append("log_date", 1)),
+                new Document("$sort", new Document("user_id", 1).append("log_date", 1)));
+
+        MongoCursor<Document> cursor = aggregate(pipeline).batchSize(STREAM_BATCH_SIZE).iterator();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
+                .map(day -> new UserEmotionDay(day.getString("user_id"), toLocalDate(day.getDate("log_date"))))
+                .onClose(cursor::close);
+    }
+
+    private AggregateIterable<Document> aggregate(List<Document> pipeline) {
+        return mongoTemplate.getCollection(COLLECTION).aggregate(pipeline).allowDiskUse(true);
+    }
+
+    // log_date được lưu là nửa đêm theo múi giờ của JVM (cách Spring Data chuyển LocalDate sang Date)
+    private static Document dateRange(LocalDate from, LocalDate to) {
+        return new Document("log_date", new Document("$gte", toDate(from)).append("$lte", toDate(to)));
+    }
+
+    private static Document formatDate(String format, String field) {
+        return new Document("$dateToString", new Document("format", format)
+                .append("date", field)
+                .append("timezone", ZoneId.systemDefault().getId()));
+    }
+
+    private static Date toDate(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+}
@@ -0,0 +1,10 @@
+package com.mindcare.backend.repository;
+
+import java.util.Map;
+
+/**
+ * Số log của mỗi cảm xúc trong một tháng (period), của nhóm người dùng đăng ký trong cùng một tháng (cohort).
+ * Cả hai đều ở dạng "yyyy-MM".
+ */
+public record EmotionCohortCounts(String cohort, String period, long activeUsers, Map<String, Long> counts) {
+}
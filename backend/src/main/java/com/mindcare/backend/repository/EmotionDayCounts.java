@@ -0,0 +1,10 @@
+package com.mindcare.backend.repository;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Số log của mỗi cảm xúc trong một ngày, trên toàn bộ người dùng.
+ */
+public record EmotionDayCounts(LocalDate day, Map<String, Long> counts) {
+}
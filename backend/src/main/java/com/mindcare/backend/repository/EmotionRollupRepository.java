@@ -0,0 +1,11 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.EmotionRollup;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EmotionRollupRepository extends MongoRepository<EmotionRollup, String>, EmotionRollupRepositoryCustom {
+
+    void deleteAllByUserId(String userId);
+}
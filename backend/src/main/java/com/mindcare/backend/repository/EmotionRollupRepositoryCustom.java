@@ -0,0 +1,29 @@
+package com.mindcare.backend.repository;
+
+import java.time.YearMonth;
+import java.util.Map;
+
+/**
+ * Cập nhật và đọc collection "emotion_rollups" (xem EmotionRollup).
+ */
+public interface EmotionRollupRepositoryCustom {
+
+    /**
+     * Ghi nhận việc cảm xúc của một ngày trong tháng đổi từ previousEmotion sang newEmotion, trong một lệnh upsert
+     * $inc: +1 cho newEmotion, -1 cho previousEmotion. previousEmotion là null nếu ngày đó chưa có log.
+     */
+    void applyChange(String userId, YearMonth month, String previousEmotion, String newEmotion);
+
+    /**
+     * Tổng số ngày của mỗi cảm xúc trong các tháng từ {@code from} đến {@code to} (bao gồm hai đầu).
+     * Không trả về cảm xúc có tổng bằng 0.
+     */
+    Map<String, Long> sumCounts(String userId, YearMonth from, YearMonth to);
+
+    /**
+     * Tính lại toàn bộ rollup từ daily_emotion_logs và xóa các rollup không còn log nào.
+     *
+     * @return số document rollup đã được ghi
+     */
+    long rebuildAll();
+}
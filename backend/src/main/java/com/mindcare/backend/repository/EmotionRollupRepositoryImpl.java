@@ -0,0 +1,130 @@
+package com.mindcare.backend.repository;
+
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Spring Data tự ghép lớp này vào EmotionRollupRepository (hậu tố "Impl")
+public class EmotionRollupRepositoryImpl implements EmotionRollupRepositoryCustom {
+
+    private static final String COLLECTION = "emotion_rollups";
+    private static final String LOGS_COLLECTION = "daily_emotion_logs";
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public EmotionRollupRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void applyChange(String userId, YearMonth month, String previousEmotion, String newEmotion) {
+        if (newEmotion != null && newEmotion.equals(previousEmotion)) {
+            return;
+        }
+        Update update = new Update().set("updated_at", new Date());
+        if (newEmotion != null) {
+            update.inc("counts." + encodeKey(newEmotion), 1L);
+        }
+        if (previousEmotion != null) {
+            update.inc("counts." + encodeKey(previousEmotion), -1L);
+        }
+        // Unique index user_year_month_idx: MongoDB tự thử lại upsert trùng khóa khi hai request cùng tạo document
+        mongoTemplate.upsert(byUserAndMonth(userId, month.toString()), update, COLLECTION);
+    }
+
+    @Override
+    public Map<String, Long> sumCounts(String userId, YearMonth from, YearMonth to) {
+        Query query = Query.query(Criteria.where("user_id").is(userId)
+                .and("year_month").gte(from.toString()).lte(to.toString()));
+        query.fields().include("counts").exclude("_id");
+
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (Document rollup : mongoTemplate.find(query, Document.class, COLLECTION)) {
+            Document counts = rollup.get("counts", Document.class);
+            if (counts != null) {
+                counts.forEach((key, value) -> totals.merge(decodeKey(key), ((Number) value).longValue(), Long::sum));
+            }
+        }
+        totals.values().removeIf(count -> count <= 0); // Cảm xúc đã bị đổi hết sang cảm xúc khác
+        return totals;
+    }
+
+    @Override
+    public long rebuildAll() {
+        Date rebuildStartedAt = new Date();
+        // log_date được lưu là nửa đêm theo múi giờ của JVM: tính tháng theo cùng múi giờ đó
+        Document yearMonth = new Document("$dateToString", new Document("format", "%Y-%m")
+                .append("date", "$log_date")
+                .append("timezone", ZoneId.systemDefault().getId()));
+        List<Document> pipeline = List.of(
+                new Document("$group", new Document("_id", new Document("user_id", "$user_id")
+                        .append("year_month", yearMonth)
+                        .append("emotion", "$emotion"))
+                        .append("count", new Document("$sum", 1))),
+                new Document("$group", new Document("_id", new Document("user_id", "$_id.user_id")
+                        .append("year_month", "$_id.year_month"))
+                        .append("counts", new Document("$push", new Document("emotion", "$_id.emotion")
+                                .append("count", "$count")))));
+
+        long written = 0;
+        BulkOperations bulk = null;
+        int pending = 0;
+        try (MongoCursor<Document> groups = mongoTemplate.getCollection(LOGS_COLLECTION)
+                .aggregate(pipeline).allowDiskUse(true).iterator()) {
+            while (groups.hasNext()) {
+                Document group = groups.next();
+                Document key = group.get("_id", Document.class);
+                Document counts = new Document();
+                for (Document count : group.getList("counts", Document.class)) {
+                    counts.append(encodeKey(count.getString("emotion")), ((Number) count.get("count")).longValue());
+                }
+                if (bulk == null) {
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+                }
+                bulk.upsert(byUserAndMonth(key.getString("user_id"), key.getString("year_month")),
+                        new Update().set("counts", counts).set("updated_at", new Date()));
+                pending++;
+                if (pending == BATCH_SIZE) {
+                    bulk.execute();
+                    written += pending;
+                    bulk = null;
+                    pending = 0;
+                }
+            }
+        }
+        if (bulk != null) {
+            bulk.execute();
+            written += pending;
+        }
+        // Rollup không được ghi lại ở lần này (và không được cập nhật trong lúc chạy) không còn log nào
+        mongoTemplate.remove(Query.query(Criteria.where("updated_at").lt(rebuildStartedAt)), COLLECTION);
+        return written;
+    }
+
+    private static Query byUserAndMonth(String userId, String yearMonth) {
+        return Query.query(Criteria.where("user_id").is(userId).and("year_month").is(yearMonth));
+    }
+
+    // Tên trường MongoDB không dùng được '.' và '$' trong $inc: mã hóa kiểu URL ('%' trước để giải mã được)
+    static String encodeKey(String emotion) {
+        return emotion.replace("%", "%25").replace(".", "%2E").replace("$", "%24");
+    }
+
+    static String decodeKey(String key) {
+        return key.replace("%2E", ".").replace("%24", "$").replace("%25", "%");
+    }
+}
@@ -0,0 +1,38 @@
+package com.mindcare.backend.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Vị trí của một tin nhắn trong thứ tự (timestamp, _id), dùng làm cursor cho phân trang keyset.
+ * Ở phía client, cursor là một chuỗi base64url không cần hiểu nội dung.
+ */
+public record MessageCursor(LocalDateTime timestamp, String id) {
+
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        String raw = timestamp.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Giải mã cursor do {@link #encode()} tạo ra.
+     *
+     * @throws IllegalArgumentException nếu cursor không hợp lệ
+     */
+    public static MessageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separatorIndex = raw.indexOf(SEPARATOR);
+            if (separatorIndex <= 0 || separatorIndex == raw.length() - 1) {
+                throw new IllegalArgumentException("Malformed message cursor");
+            }
+            return new MessageCursor(LocalDateTime.parse(raw.substring(0, separatorIndex)), raw.substring(separatorIndex + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed message cursor", e);
+        }
+    }
+}
@@ -6,10 +6,13 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository // Đánh dấu đây là một Spring Data repository
-public interface MessageRepository extends MongoRepository<Message, String> {
+public interface MessageRepository extends MongoRepository<Message, String>, MessageRepositoryCustom {
 
     /**
      * Tìm tất cả các tin nhắn thuộc về một cuộc hội thoại cụ thể,
@@ -23,9 +26,21 @@ public interface MessageRepository extends MongoRepository<Message, String> {
      */
     Page<Message> findByConversationIdOrderByTimestampDesc(String conversationId, Pageable pageable);
 
+    // Tìm tin nhắn đầu tiên được gửi sau một thời điểm (dùng để tìm câu trả lời AI cho một tin nhắn user)
+    Optional<Message> findFirstByConversationIdAndTimestampAfterOrderByTimestampAsc(String conversationId, LocalDateTime timestamp);
+
+    /**
+     * Tìm các tin nhắn có timestamp nằm trong khoảng (from, to) - không bao gồm hai đầu mút,
+     * sắp xếp theo thời gian tăng dần. Dùng để lấy các lượt chưa được tóm tắt.
+     */
+    List<Message> findByConversationIdAndTimestampBetweenOrderByTimestampAsc(String conversationId, LocalDateTime from, LocalDateTime to, Pageable pageable);
+
     // Đếm số lượng tin nhắn trong một cuộc hội thoại
     long countByConversationId(String conversationId);
 
      // Xóa tất cả các tin nhắn thuộc về một conversationId cụ thể.
     void deleteAllByConversationId(String conversationId);
+
+    // Xóa tin nhắn của nhiều cuộc hội thoại trong một lệnh deleteMany ($in), không đọc document trước
+    void deleteAllByConversationIdIn(Collection<String> conversationIds);
 }
\ No newline at end of file
@@ -0,0 +1,23 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.Message;
+
+import java.util.List;
+
+/**
+ * Các truy vấn tin nhắn cần MongoTemplate (không biểu diễn được bằng derived query).
+ */
+public interface MessageRepositoryCustom {
+
+    /**
+     * Phân trang keyset theo (timestamp, _id).
+     *
+     * - before != null: các tin nhắn cũ hơn cursor (cuộn lên).
+     * - after != null: các tin nhắn mới hơn cursor.
+     * - Không có cursor: trang các tin nhắn mới nhất.
+     *
+     * Kết quả luôn sắp xếp tăng dần theo thời gian và có tối đa limit + 1 phần tử
+     * (phần tử thừa cho biết còn trang tiếp theo; nó nằm ở đầu danh sách khi đọc về quá khứ, ở cuối khi đọc tới).
+     */
+    List<Message> findPageByConversationId(String conversationId, MessageCursor before, MessageCursor after, int limit);
+}
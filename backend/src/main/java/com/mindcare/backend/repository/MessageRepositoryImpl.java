@@ -0,0 +1,51 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Spring Data tự ghép lớp này vào MessageRepository (hậu tố "Impl")
+public class MessageRepositoryImpl implements MessageRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public MessageRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<Message> findPageByConversationId(String conversationId, MessageCursor before, MessageCursor after, int limit) {
+        boolean forward = after != null;
+        Sort.Direction direction = forward ? Sort.Direction.ASC : Sort.Direction.DESC;
+
+        Criteria criteria = Criteria.where("conversationId").is(conversationId);
+        MessageCursor cursor = forward ? after : before;
+        if (cursor != null) {
+            // (timestamp, _id) lớn/nhỏ hơn cursor theo thứ tự từ điển; _id phân định các tin nhắn cùng timestamp
+            Criteria timestampBeyond = forward
+                    ? Criteria.where("timestamp").gt(cursor.timestamp())
+                    : Criteria.where("timestamp").lt(cursor.timestamp());
+            Criteria sameTimestampIdBeyond = forward
+                    ? Criteria.where("timestamp").is(cursor.timestamp()).and("id").gt(cursor.id())
+                    : Criteria.where("timestamp").is(cursor.timestamp()).and("id").lt(cursor.id());
+            criteria = criteria.orOperator(timestampBeyond, sameTimestampIdBeyond);
+        }
+
+        Query query = Query.query(criteria)
+                .with(Sort.by(direction, "timestamp").and(Sort.by(direction, "id")))
+                .limit(limit + 1);
+        List<Message> messages = new ArrayList<>(mongoTemplate.find(query, Message.class));
+        if (!forward) {
+            Collections.reverse(messages); // Trả về theo thứ tự thời gian tăng dần
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,45 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.Message;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Nơi lưu tin nhắn của các cuộc hội thoại. Có hai cách lưu, chọn bằng {@code app.messages.storage}:
+ * - collection (mặc định): mỗi tin nhắn là một document trong collection "messages";
+ * - bucket: tin nhắn được gộp vào các document "message_buckets" có kích thước cố định,
+ *   mỗi lần thêm tin nhắn là một lệnh upsert $push.
+ *
+ * Mọi danh sách trả về đều sắp xếp theo (timestamp, id) tăng dần, trừ khi ghi chú khác.
+ */
+public interface MessageStore {
+
+    // Lưu một tin nhắn mới và trả về tin nhắn đã có ID
+    Message append(Message message);
+
+    Optional<Message> findById(String conversationId, String messageId);
+
+    // Tin nhắn đầu tiên có timestamp sau thời điểm cho trước
+    Optional<Message> findFirstAfter(String conversationId, LocalDateTime timestamp);
+
+    List<Message> findAll(String conversationId);
+
+    // Tối đa limit tin nhắn mới nhất, sắp xếp từ mới đến cũ
+    List<Message> findLatest(String conversationId, int limit);
+
+    // Các tin nhắn có timestamp trong khoảng (from, to), không bao gồm hai đầu mút
+    List<Message> findBetween(String conversationId, LocalDateTime from, LocalDateTime to, int limit);
+
+    // Cùng quy ước với MessageRepositoryCustom.findPageByConversationId (tối đa limit + 1 phần tử)
+    List<Message> findPage(String conversationId, MessageCursor before, MessageCursor after, int limit);
+
+    long count(String conversationId);
+
+    void deleteByConversationId(String conversationId);
+
+    // Xóa tin nhắn của nhiều cuộc hội thoại bằng một lệnh deleteMany ($in)
+    void deleteByConversationIds(Collection<String> conversationIds);
+}
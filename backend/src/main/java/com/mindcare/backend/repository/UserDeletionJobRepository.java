@@ -0,0 +1,13 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.UserDeletionJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface UserDeletionJobRepository extends MongoRepository<UserDeletionJob, String>, UserDeletionJobRepositoryCustom {
+
+    Optional<UserDeletionJob> findByUserId(String userId);
+}
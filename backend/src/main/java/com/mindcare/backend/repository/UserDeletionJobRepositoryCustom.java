@@ -0,0 +1,37 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.UserDeletionJob;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Các cập nhật trạng thái tác vụ xóa user dạng nguyên tử, để nhiều instance không chạy cùng một tác vụ.
+ */
+public interface UserDeletionJobRepositoryCustom {
+
+    /**
+     * Nhận tác vụ để chạy: chỉ thành công nếu tác vụ đang PENDING, hoặc RUNNING nhưng updated_at trước staleBefore
+     * (instance chạy trước đó đã dừng). Chuyển sang RUNNING, tăng attempts và trả về tác vụ sau khi cập nhật.
+     */
+    Optional<UserDeletionJob> claim(String jobId, LocalDateTime staleBefore);
+
+    // ID các tác vụ có thể nhận bằng claim(jobId, staleBefore), cũ nhất trước
+    List<String> findResumableIds(LocalDateTime staleBefore);
+
+    // $inc conversations_deleted và làm mới updated_at (nhịp "còn sống" của tác vụ)
+    void recordProgress(String jobId, long conversationsDeleted);
+
+    // Trả tác vụ RUNNING về PENDING (instance đang tắt) để instance khác nhận ngay, không phải chờ hết stale-after
+    void release(String jobId);
+
+    void markCompleted(String jobId);
+
+    void markFailed(String jobId, String error);
+
+    /**
+     * Đưa tác vụ FAILED về PENDING để chạy lại. Trả về false nếu tác vụ không ở trạng thái FAILED.
+     */
+    boolean requeueFailed(String jobId);
+}
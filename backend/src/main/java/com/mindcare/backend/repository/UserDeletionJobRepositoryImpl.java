@@ -0,0 +1,102 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.enums.EDeletionStatus;
+import com.mindcare.backend.model.UserDeletionJob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+// Spring Data tự ghép lớp này vào UserDeletionJobRepository (hậu tố "Impl")
+public class UserDeletionJobRepositoryImpl implements UserDeletionJobRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public UserDeletionJobRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Optional<UserDeletionJob> claim(String jobId, LocalDateTime staleBefore) {
+        Query query = Query.query(Criteria.where("id").is(jobId).andOperator(resumable(staleBefore)));
+        Update update = new Update()
+                .set("status", EDeletionStatus.RUNNING)
+                .set("updatedAt", LocalDateTime.now())
+                .inc("attempts", 1);
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), UserDeletionJob.class));
+    }
+
+    @Override
+    public List<String> findResumableIds(LocalDateTime staleBefore) {
+        Query query = Query.query(resumable(staleBefore)).with(Sort.by(Sort.Direction.ASC, "updatedAt"));
+        query.fields().include("id");
+        return mongoTemplate.find(query, UserDeletionJob.class).stream()
+                .map(UserDeletionJob::getId)
+                .toList();
+    }
+
+    @Override
+    public void recordProgress(String jobId, long conversationsDeleted) {
+        Update update = new Update()
+                .inc("conversationsDeleted", conversationsDeleted)
+                .set("updatedAt", LocalDateTime.now());
+        mongoTemplate.updateFirst(byId(jobId), update, UserDeletionJob.class);
+    }
+
+    @Override
+    public void release(String jobId) {
+        Query query = Query.query(Criteria.where("id").is(jobId).and("status").is(EDeletionStatus.RUNNING));
+        Update update = new Update()
+                .set("status", EDeletionStatus.PENDING)
+                .set("updatedAt", LocalDateTime.now());
+        mongoTemplate.updateFirst(query, update, UserDeletionJob.class);
+    }
+
+    @Override
+    public void markCompleted(String jobId) {
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update()
+                .set("status", EDeletionStatus.COMPLETED)
+                .set("updatedAt", now)
+                .set("completedAt", now)
+                .unset("lastError");
+        mongoTemplate.updateFirst(byId(jobId), update, UserDeletionJob.class);
+    }
+
+    @Override
+    public void markFailed(String jobId, String error) {
+        Update update = new Update()
+                .set("status", EDeletionStatus.FAILED)
+                .set("updatedAt", LocalDateTime.now())
+                .set("lastError", error);
+        mongoTemplate.updateFirst(byId(jobId), update, UserDeletionJob.class);
+    }
+
+    @Override
+    public boolean requeueFailed(String jobId) {
+        Query query = Query.query(Criteria.where("id").is(jobId).and("status").is(EDeletionStatus.FAILED));
+        Update update = new Update()
+                .set("status", EDeletionStatus.PENDING)
+                .set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.updateFirst(query, update, UserDeletionJob.class).getModifiedCount() > 0;
+    }
+
+    private static Criteria resumable(LocalDateTime staleBefore) {
+        return new Criteria().orOperator(
+                Criteria.where("status").is(EDeletionStatus.PENDING),
+                Criteria.where("status").is(EDeletionStatus.RUNNING).and("updatedAt").lt(staleBefore));
+    }
+
+    private static Query byId(String jobId) {
+        return Query.query(Criteria.where("id").is(jobId));
+    }
+}
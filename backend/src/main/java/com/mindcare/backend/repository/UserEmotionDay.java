@@ -0,0 +1,9 @@
+package com.mindcare.backend.repository;
+
+import java.time.LocalDate;
+
+/**
+ * Một ngày có log cảm xúc của một người dùng (chỉ các trường cần cho việc tìm chuỗi ngày liên tiếp).
+ */
+public record UserEmotionDay(String userId, LocalDate logDate) {
+}
@@ -7,7 +7,7 @@ import org.springframework.stereotype.Repository;
 import java.util.Optional;
 
 @Repository // Đánh dấu đây là một Spring Data repository
-public interface UserRepository extends MongoRepository<User, String> {
+public interface UserRepository extends MongoRepository<User, String>, UserRepositoryCustom {
     // Tìm kiếm User dựa trên trường 'username'
     Optional<User> findByUsername(String username);
 
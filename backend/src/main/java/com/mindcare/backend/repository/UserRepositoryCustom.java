@@ -0,0 +1,42 @@
+package com.mindcare.backend.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Các truy vấn người dùng cần MongoTemplate (không biểu diễn được bằng derived query).
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Danh sách người dùng cho admin, chỉ đọc các trường cần hiển thị (không đọc mật khẩu).
+     * Không gồm các user đã bị đánh dấu deleted.
+     *
+     * @param usernamePrefix lọc theo tiền tố username (phân biệt hoa thường, dùng được index của username); null để lấy tất cả
+     * @param pageable       trang và thứ tự; sort dùng tên trường trong MongoDB ("username", "created_at")
+     */
+    Page<UserSummary> findSummaries(String usernamePrefix, Pageable pageable);
+
+    /**
+     * Chỉ đọc token_version của user (projection một trường).
+     * Optional.empty() nếu user không tồn tại hoặc đã bị đánh dấu deleted.
+     */
+    Optional<Long> findTokenVersion(String userId);
+
+    /**
+     * userId -> username của các user trong danh sách (projection username, không đọc mật khẩu).
+     * Không gồm các user không tồn tại hoặc đã bị đánh dấu deleted.
+     */
+    Map<String, String> findUsernames(Collection<String> userIds);
+
+    /**
+     * Đánh dấu user đã bị xóa (deleted = true) trong một lệnh update, không đọc document.
+     *
+     * @return true nếu tìm thấy user
+     */
+    boolean markDeleted(String userId);
+}
@@ -0,0 +1,99 @@
+package com.mindcare.backend.repository;
+
+import com.mindcare.backend.model.User;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.regex.Pattern;
+
+// Spring Data tự ghép lớp này vào UserRepository (hậu tố "Impl")
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    private static final String COLLECTION = "users";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Autowired
+    public UserRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Page<UserSummary> findSummaries(String usernamePrefix, Pageable pageable) {
+        Query filter = Query.query(Criteria.where("deleted").ne(true));
+        if (usernamePrefix != null && !usernamePrefix.isEmpty()) {
+            // Regex neo đầu chuỗi, không có cờ i: MongoDB quét được theo khoảng trên index của username
+            filter.addCriteria(Criteria.where("username").regex("^" + Pattern.quote(usernamePrefix)));
+        }
+
+        // Đọc Document thô với projection: không ánh xạ toàn bộ entity User (và không bao giờ đọc mật khẩu)
+        Query query = Query.of(filter).with(pageable);
+        query.fields().include("username", "avatar_url", "role_names", "created_at", "updated_at");
+        List<UserSummary> users = mongoTemplate.find(query, Document.class, COLLECTION).stream()
+                .map(UserRepositoryImpl::toSummary)
+                .toList();
+
+        // Chỉ đếm tổng khi không suy ra được từ trang hiện tại
+        return PageableExecutionUtils.getPage(users, pageable, () -> mongoTemplate.count(filter, COLLECTION));
+    }
+
+    @Override
+    public Optional<Long> findTokenVersion(String userId) {
+        Query query = Query.query(Criteria.where("id").is(userId).and("deleted").ne(true));
+        query.fields().include("tokenVersion");
+        return Optional.ofNullable(mongoTemplate.findOne(query, User.class))
+                .map(User::getTokenVersion);
+    }
+
+    @Override
+    public Map<String, String> findUsernames(Collection<String> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        Query query = Query.query(Criteria.where("id").in(userIds).and("deleted").ne(true));
+        query.fields().include("username");
+        return mongoTemplate.find(query, User.class).stream()
+                .collect(Collectors.toMap(User::getId, User::getUsername));
+    }
+
+    @Override
+    public boolean markDeleted(String userId) {
+        Update update = new Update()
+                .set("deleted", true)
+                .set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(userId)), update, User.class)
+                .getMatchedCount() > 0;
+    }
+
+    private static UserSummary toSummary(Document document) {
+        List<String> roleNames = document.getList("role_names", String.class);
+        return new UserSummary(
+                document.getObjectId("_id").toHexString(),
+                document.getString("username"),
+                document.getString("avatar_url"),
+                roleNames != null ? roleNames : List.of(),
+                toLocalDateTime(document.getDate("created_at")),
+                toLocalDateTime(document.getDate("updated_at"))
+        );
+    }
+
+    // Cùng quy ước với converter mặc định của Spring Data (múi giờ hệ thống)
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return date == null ? null : LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,15 @@
+package com.mindcare.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Thông tin người dùng cho danh sách của admin, đọc bằng projection (không bao giờ chứa mật khẩu).
+ */
+public record UserSummary(String id,
+                          String username,
+                          String avatarUrl,
+                          List<String> roleNames,
+                          LocalDateTime createdAt,
+                          LocalDateTime updatedAt) {
+}
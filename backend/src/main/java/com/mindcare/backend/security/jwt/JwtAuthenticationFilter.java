@@ -1,6 +1,8 @@
 package com.mindcare.backend.security.jwt;
 
+import com.mindcare.backend.security.services.UserDetailsImpl;
 import com.mindcare.backend.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,9 +10,9 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -22,13 +24,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtils jwtUtils;
     private final UserDetailsServiceImpl userDetailsService;
+    private final TokenVersionCache tokenVersionCache;
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
+    // true: dựng principal từ claims của token thay vì đọc User từ MongoDB ở mỗi request
+    @Value("${jwt.stateless:false}")
+    private boolean stateless;
 
     @Autowired
-    public JwtAuthenticationFilter(JwtUtils jwtUtils, UserDetailsServiceImpl userDetailsService) {
+    public JwtAuthenticationFilter(JwtUtils jwtUtils, UserDetailsServiceImpl userDetailsService,
+                                   TokenVersionCache tokenVersionCache) {
         this.jwtUtils = jwtUtils;
         this.userDetailsService = userDetailsService;
+        this.tokenVersionCache = tokenVersionCache;
     }
 
     @Override
@@ -38,18 +46,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
         try {
             String jwt = jwtUtils.parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-                String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(
-                                userDetails,
-                                null, // Credentials: null vì JWT đã được xác thực
-                                userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+            JwtValidationResult result = jwt != null ? jwtUtils.parseAndValidate(jwt) : null;
+            if (result != null && result.isValid()) {
+                UserDetailsImpl userDetails = resolveUser(result.claims());
+                if (userDetails != null) {
+                    UsernamePasswordAuthenticationToken authentication =
+                            new UsernamePasswordAuthenticationToken(
+                                    userDetails,
+                                    null, // Credentials: null vì JWT đã được xác thực
+                                    userDetails.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         } catch (Exception e) {
             logger.error("Cannot set user authentication: {}", e.getMessage(), e);
@@ -60,4 +69,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    /**
+     * Lấy principal cho token đã được xác thực chữ ký, hoặc null nếu token đã bị thu hồi.
+     * - jwt.stateless=true và token có đủ claims: dựng từ claims, kiểm tra thu hồi qua TokenVersionCache (thường không chạm DB).
+     * - Ngược lại (hoặc token cũ không có claims): đọc User từ DB như trước và so sánh token_version trực tiếp.
+     */
+    private UserDetailsImpl resolveUser(Claims claims) {
+        Long tokenVersion = JwtUtils.getTokenVersion(claims);
+        if (stateless && JwtUtils.hasUserClaims(claims)) {
+            UserDetailsImpl userDetails = JwtUtils.buildUserDetailsFromClaims(claims);
+            if (!tokenVersionCache.isCurrent(userDetails.getId(), tokenVersion)) {
+                logger.debug("Rejected revoked JWT for UserID: {} (token version {})", userDetails.getId(), tokenVersion);
+                return null;
+            }
+            return userDetails;
+        }
+
+        UserDetailsImpl userDetails = (UserDetailsImpl) userDetailsService.loadUserByUsername(claims.getSubject());
+        if (tokenVersion != null && tokenVersion != userDetails.getTokenVersion()) {
+            logger.debug("Rejected revoked JWT for UserID: {} (token version {})", userDetails.getId(), tokenVersion);
+            return null;
+        }
+        return userDetails;
+    }
+}
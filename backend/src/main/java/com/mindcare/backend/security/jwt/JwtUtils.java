@@ -1,7 +1,9 @@
 package com.mindcare.backend.security.jwt;
 
 import com.mindcare.backend.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts; // Sử dụng Jwts từ io.jsonwebtoken
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.UnsupportedJwtException;
@@ -11,38 +13,59 @@ import io.jsonwebtoken.security.SignatureException; // Import đúng SignatureEx
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import javax.crypto.SecretKey; // Import SecretKey
 import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtUtils {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
-    @Value("${jwt.secret}")
-    private String jwtSecretString; // Secret key dưới dạng chuỗi (đã được Base64 encoded)
+    static final String CLAIM_USER_ID = "uid";
+    static final String CLAIM_ROLES = "roles";
+    static final String CLAIM_TOKEN_VERSION = "tv";
 
-    @Value("${jwt.expirationMs}")
-    private int jwtExpirationMs;
+    private final int jwtExpirationMs;
+    // Key và parser được tạo một lần: JwtParser của jjwt là immutable và thread-safe
+    private final SecretKey signingKey;
+    private final JwtParser jwtParser;
+    private final VerifiedTokenCache verifiedTokenCache;
 
-    // Phương thức để lấy SecretKey từ chuỗi secret đã decode Base64
-    private SecretKey key() {
-        byte[] keyBytes = Decoders.BASE64.decode(this.jwtSecretString);
-        return Keys.hmacShaKeyFor(keyBytes);
+    @Autowired
+    public JwtUtils(@Value("${jwt.secret}") String jwtSecretString, // Secret key dưới dạng chuỗi (đã được Base64 encoded)
+                    @Value("${jwt.expirationMs}") int jwtExpirationMs,
+                    @Value("${jwt.verified-cache.max-entries:10000}") int verifiedCacheMaxEntries) {
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecretString));
+        this.jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        this.verifiedTokenCache = new VerifiedTokenCache(verifiedCacheMaxEntries);
     }
 
     public String generateJwtToken(Authentication authentication) {
         UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
 
+        // ID, vai trò và token_version đi kèm token để JwtAuthenticationFilter không phải đọc lại User (jwt.stateless)
         return Jwts.builder()
                 .subject(userPrincipal.getUsername())
+                .claim(CLAIM_USER_ID, userPrincipal.getId())
+                .claim(CLAIM_ROLES, userPrincipal.getAuthorities().stream()
+                        .map(GrantedAuthority::getAuthority)
+                        .collect(Collectors.toList()))
+                .claim(CLAIM_TOKEN_VERSION, userPrincipal.getTokenVersion())
                 .issuedAt(new Date())
                 .expiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key(), Jwts.SIG.HS512)
+                .signWith(signingKey, Jwts.SIG.HS512)
                 .compact();
     }
 
@@ -51,38 +74,74 @@ public class JwtUtils {
                 .subject(username)
                 .issuedAt(new Date())
                 .expiration(new Date((new Date()).getTime() + jwtExpirationMs))
-                .signWith(key(), Jwts.SIG.HS512)
+                .signWith(signingKey, Jwts.SIG.HS512)
                 .compact();
     }
 
-    public String getUserNameFromJwtToken(String token) {
-        return Jwts.parser()
-                .verifyWith(key())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload()
-                .getSubject();
-    }
-
-    public boolean validateJwtToken(String authToken) {
+    /**
+     * Xác thực chữ ký và hạn dùng của token, parse đúng một lần.
+     * Token vừa được xác thực gần đây được lấy từ cache (theo SHA-256 của token) mà không cần kiểm tra chữ ký lại.
+     */
+    public JwtValidationResult parseAndValidate(String token) {
+        if (!StringUtils.hasText(token)) {
+            return JwtValidationResult.failed(JwtValidationResult.Failure.EMPTY);
+        }
+        String tokenHash = null;
+        if (verifiedTokenCache.isEnabled()) {
+            tokenHash = VerifiedTokenCache.hash(token);
+            Claims cached = verifiedTokenCache.get(tokenHash, System.currentTimeMillis());
+            if (cached != null) {
+                return JwtValidationResult.valid(cached);
+            }
+        }
         try {
-            Jwts.parser()
-                    .verifyWith(key())
-                    .build()
-                    .parseSignedClaims(authToken);
-            return true;
+            Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+            if (tokenHash != null) {
+                verifiedTokenCache.put(tokenHash, claims);
+            }
+            return JwtValidationResult.valid(claims);
         } catch (SignatureException e) {
             logger.error("Invalid JWT signature: {}", e.getMessage());
+            return JwtValidationResult.failed(JwtValidationResult.Failure.INVALID_SIGNATURE);
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
+            return JwtValidationResult.failed(JwtValidationResult.Failure.MALFORMED);
         } catch (ExpiredJwtException e) {
             logger.error("JWT token is expired: {}", e.getMessage());
+            return JwtValidationResult.failed(JwtValidationResult.Failure.EXPIRED);
         } catch (UnsupportedJwtException e) {
             logger.error("JWT token is unsupported: {}", e.getMessage());
+            return JwtValidationResult.failed(JwtValidationResult.Failure.UNSUPPORTED);
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
+            return JwtValidationResult.failed(JwtValidationResult.Failure.EMPTY);
         }
-        return false;
+    }
+
+    // Token được cấp trước khi có các claim uid/roles/tv thì không dựng được UserDetails từ claims
+    public static boolean hasUserClaims(Claims claims) {
+        return claims.get(CLAIM_USER_ID) != null
+                && claims.get(CLAIM_ROLES) instanceof List
+                && claims.get(CLAIM_TOKEN_VERSION) instanceof Number;
+    }
+
+    public static Long getTokenVersion(Claims claims) {
+        Object version = claims.get(CLAIM_TOKEN_VERSION);
+        return version instanceof Number number ? number.longValue() : null;
+    }
+
+    // Dựng principal chỉ từ claims (không có mật khẩu và avatarUrl)
+    public static UserDetailsImpl buildUserDetailsFromClaims(Claims claims) {
+        List<GrantedAuthority> authorities = ((List<?>) claims.get(CLAIM_ROLES)).stream()
+                .map(role -> new SimpleGrantedAuthority(role.toString()))
+                .collect(Collectors.toList());
+        return new UserDetailsImpl(
+                claims.get(CLAIM_USER_ID, String.class),
+                claims.getSubject(),
+                null,
+                null,
+                authorities,
+                getTokenVersion(claims));
     }
 
     public String parseJwt(HttpServletRequest request) {
@@ -0,0 +1,29 @@
+package com.mindcare.backend.security.jwt;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Kết quả của {@link JwtUtils#parseAndValidate}: claims của token hợp lệ, hoặc lý do token bị từ chối.
+ */
+public record JwtValidationResult(Claims claims, Failure failure) {
+
+    public enum Failure {
+        EMPTY,             // Không có token / chuỗi rỗng
+        MALFORMED,         // Không đúng định dạng JWT
+        INVALID_SIGNATURE, // Chữ ký không khớp với secret
+        EXPIRED,
+        UNSUPPORTED        // Không phải JWS ký bằng HMAC như token do hệ thống cấp
+    }
+
+    static JwtValidationResult valid(Claims claims) {
+        return new JwtValidationResult(claims, null);
+    }
+
+    static JwtValidationResult failed(Failure failure) {
+        return new JwtValidationResult(null, failure);
+    }
+
+    public boolean isValid() {
+        return failure == null;
+    }
+}
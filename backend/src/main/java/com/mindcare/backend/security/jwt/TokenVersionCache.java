@@ -0,0 +1,87 @@
+package com.mindcare.backend.security.jwt;
+
+import com.mindcare.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache trong bộ nhớ của token_version theo user, dùng để thu hồi JWT ở chế độ stateless (jwt.stateless=true).
+ *
+ * Token chỉ hợp lệ khi claim "tv" bằng token_version hiện tại của user. Khi mật khẩu hoặc vai trò thay đổi,
+ * service tăng token_version trong DB rồi gọi {@link #update}; instance hiện tại thấy ngay giá trị mới,
+ * các instance khác thấy sau tối đa một TTL (jwt.token-version-cache.ttl). Khi cache không có (hoặc hết hạn),
+ * giá trị được đọc lại bằng một truy vấn projection; user không còn tồn tại thì mọi token đều bị từ chối.
+ */
+@Component
+public class TokenVersionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenVersionCache.class);
+
+    // token_version không bao giờ âm: dùng để đánh dấu user đã bị xóa
+    private static final long DELETED = -1;
+
+    private record Entry(long version, long expiresAtNanos) {
+    }
+
+    private final UserRepository userRepository;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Map<String, Entry> versions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TokenVersionCache(UserRepository userRepository,
+                             @Value("${jwt.token-version-cache.ttl:60s}") Duration ttl,
+                             @Value("${jwt.token-version-cache.max-entries:10000}") int maxEntries) {
+        this.userRepository = userRepository;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+    }
+
+    // true nếu token mang tokenVersion vẫn còn hiệu lực cho user này
+    public boolean isCurrent(String userId, long tokenVersion) {
+        long now = System.nanoTime();
+        Entry entry = versions.get(userId);
+        if (entry == null || now - entry.expiresAtNanos() > 0) {
+            long version = userRepository.findTokenVersion(userId).orElse(DELETED);
+            entry = put(userId, version, now);
+        }
+        return entry.version() != DELETED && entry.version() == tokenVersion;
+    }
+
+    // Gọi sau khi token_version mới đã được lưu vào DB
+    public void update(String userId, long newVersion) {
+        put(userId, newVersion, System.nanoTime());
+        logger.info("Token version of UserID: {} is now {}. Previously issued tokens are revoked.", userId, newVersion);
+    }
+
+    // Gọi sau khi user bị xóa: mọi token của user bị từ chối ngay trên instance này
+    public void markDeleted(String userId) {
+        put(userId, DELETED, System.nanoTime());
+    }
+
+    private Entry put(String userId, long version, long now) {
+        if (versions.size() >= maxEntries && !versions.containsKey(userId)) {
+            evictExpired();
+            if (versions.size() >= maxEntries) {
+                versions.clear(); // Các entry sẽ được nạp lại dần từ DB
+            }
+        }
+        Entry entry = new Entry(version, now + ttlNanos);
+        versions.put(userId, entry);
+        return entry;
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.token-version-cache.cleanup-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        versions.entrySet().removeIf(e -> now - e.getValue().expiresAtNanos() > 0);
+    }
+}
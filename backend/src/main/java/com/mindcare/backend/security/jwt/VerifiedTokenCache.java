@@ -0,0 +1,80 @@
+package com.mindcare.backend.security.jwt;
+
+import io.jsonwebtoken.Claims;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU có giới hạn của các token đã được xác thực chữ ký, khóa là SHA-256 của token
+ * (không giữ chính token trong bộ nhớ). Mỗi entry chỉ dùng được tới thời điểm hết hạn của token,
+ * nên cache không bao giờ chấp nhận một token mà việc parse lại sẽ từ chối vì hết hạn.
+ * Việc thu hồi token (token_version) vẫn được kiểm tra sau bước này.
+ */
+class VerifiedTokenCache {
+
+    private record Entry(Claims claims, long expiresAtMillis) {
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+
+    VerifiedTokenCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        // LinkedHashMap theo thứ tự truy cập: phần tử đầu là phần tử ít được dùng nhất
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > VerifiedTokenCache.this.maxEntries;
+            }
+        };
+    }
+
+    boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    Claims get(String tokenHash, long nowMillis) {
+        synchronized (entries) {
+            Entry entry = entries.get(tokenHash);
+            if (entry == null) {
+                return null;
+            }
+            if (nowMillis >= entry.expiresAtMillis()) {
+                entries.remove(tokenHash);
+                return null;
+            }
+            return entry.claims();
+        }
+    }
+
+    void put(String tokenHash, Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            return; // Token không có hạn dùng thì luôn xác thực lại
+        }
+        synchronized (entries) {
+            entries.put(tokenHash, new Entry(claims, expiration.getTime()));
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
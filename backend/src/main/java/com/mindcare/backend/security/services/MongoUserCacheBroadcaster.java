@@ -0,0 +1,126 @@
+package com.mindcare.backend.security.services;
+
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Phát tín hiệu xóa cache user qua MongoDB, không cần thêm hạ tầng (Redis...).
+ * Mỗi tín hiệu là một document nhỏ trong "user_cache_invalidations" (tự xóa bằng TTL index);
+ * mỗi instance bỏ qua tín hiệu do chính nó ghi.
+ *
+ * created_at do MongoDB gán ($currentDate), không dùng ObjectId: ObjectId từ các instance khác nhau trong cùng
+ * một giây không sắp xếp theo thời gian ghi. Một tín hiệu vẫn có thể hiện ra sau một tín hiệu có created_at lớn hơn
+ * (hai lệnh ghi đồng thời), nên mỗi lần đọc lùi lại thêm {@code app.users.cache.broadcast.overlap} và bỏ qua
+ * các _id đã xử lý trong khoảng đó.
+ */
+@Component
+@ConditionalOnProperty(name = "app.users.cache.broadcast", havingValue = "mongo")
+public class MongoUserCacheBroadcaster implements UserCacheBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoUserCacheBroadcaster.class);
+
+    private static final String COLLECTION = "user_cache_invalidations";
+
+    private final MongoTemplate mongoTemplate;
+    private final Duration retention;
+    private final Duration overlap;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final List<BiConsumer<String, Collection<String>>> listeners = new CopyOnWriteArrayList<>();
+    // Chỉ nhận các tín hiệu ghi sau khi instance khởi động (cache lúc đó còn rỗng).
+    // Hai trường dưới đây chỉ được dùng trong poll() (một luồng của scheduler).
+    private Date lastSeenCreatedAt = new Date();
+    // _id -> created_at của các tín hiệu đã xử lý còn nằm trong khoảng overlap
+    private final Map<ObjectId, Date> seenIds = new HashMap<>();
+
+    @Autowired
+    public MongoUserCacheBroadcaster(MongoTemplate mongoTemplate,
+                                     @Value("${app.users.cache.broadcast.retention:10m}") Duration retention,
+                                     @Value("${app.users.cache.broadcast.overlap:5s}") Duration overlap) {
+        this.mongoTemplate = mongoTemplate;
+        this.retention = retention;
+        this.overlap = overlap;
+    }
+
+    @PostConstruct
+    void ensureTtlIndex() {
+        mongoTemplate.indexOps(COLLECTION).ensureIndex(new Index()
+                .on("created_at", Sort.Direction.ASC)
+                .named("created_at_ttl_idx")
+                .expire(retention));
+    }
+
+    @Override
+    public void publish(String userId, Collection<String> usernames) {
+        try {
+            // Upsert với _id mới luôn chèn document; dùng upsert để created_at lấy theo đồng hồ của MongoDB
+            mongoTemplate.upsert(Query.query(Criteria.where("_id").is(new ObjectId())), new Update()
+                    .set("user_id", userId)
+                    .set("usernames", List.copyOf(usernames))
+                    .set("origin", instanceId)
+                    .currentDate("created_at"), COLLECTION);
+        } catch (Exception e) {
+            // Không làm hỏng thao tác ghi của người dùng: các instance khác vẫn thấy thay đổi sau một TTL
+            logger.warn("Failed to publish user cache invalidation for UserID: {}. Error: {}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribe(BiConsumer<String, Collection<String>> listener) {
+        listeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${app.users.cache.broadcast.poll-interval-ms:1000}")
+    public void poll() {
+        Date windowStart = new Date(lastSeenCreatedAt.getTime() - overlap.toMillis());
+        Query query = Query.query(Criteria.where("created_at").gte(windowStart).and("origin").ne(instanceId))
+                .with(Sort.by(Sort.Direction.ASC, "created_at"));
+        query.fields().include("user_id", "usernames", "created_at");
+        List<Document> invalidations = mongoTemplate.find(query, Document.class, COLLECTION);
+        int applied = 0;
+        for (Document invalidation : invalidations) {
+            Date createdAt = invalidation.getDate("created_at");
+            if (seenIds.putIfAbsent(invalidation.getObjectId("_id"), createdAt) != null) {
+                continue;
+            }
+            String userId = invalidation.getString("user_id");
+            List<String> usernames = invalidation.getList("usernames", String.class, List.of());
+            for (BiConsumer<String, Collection<String>> listener : listeners) {
+                listener.accept(userId, usernames);
+            }
+            if (createdAt.after(lastSeenCreatedAt)) {
+                lastSeenCreatedAt = createdAt;
+            }
+            applied++;
+        }
+        // Các _id cũ hơn khoảng overlap sẽ không được đọc lại nữa
+        Date pruneBefore = new Date(lastSeenCreatedAt.getTime() - overlap.toMillis());
+        seenIds.values().removeIf(createdAt -> createdAt.before(pruneBefore));
+        if (applied > 0) {
+            logger.debug("Applied {} user cache invalidations from other instances.", applied);
+        }
+    }
+}
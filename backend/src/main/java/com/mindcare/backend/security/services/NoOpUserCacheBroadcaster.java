@@ -0,0 +1,23 @@
+package com.mindcare.backend.security.services;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.function.BiConsumer;
+
+/**
+ * Chỉ chạy một instance (cách triển khai mặc định): không cần phát tín hiệu xóa cache.
+ */
+@Component
+@ConditionalOnProperty(name = "app.users.cache.broadcast", havingValue = "none", matchIfMissing = true)
+public class NoOpUserCacheBroadcaster implements UserCacheBroadcaster {
+
+    @Override
+    public void publish(String userId, Collection<String> usernames) {
+    }
+
+    @Override
+    public void subscribe(BiConsumer<String, Collection<String>> listener) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.mindcare.backend.security.services;
+
+import com.mindcare.backend.enums.ERole;
+import com.mindcare.backend.model.Role;
+import com.mindcare.backend.repository.RoleRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Danh sách vai trò trong bộ nhớ, nạp một lần khi khởi động (tạo document "roles" còn thiếu cho mỗi ERole).
+ * User lưu tên vai trò trực tiếp nên việc xác thực không cần đọc collection "roles";
+ * registry chỉ dùng để kiểm tra tên vai trò từ request và để chuyển dữ liệu @DBRef cũ.
+ */
+@Component
+public class RoleRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleRegistry.class);
+
+    private final RoleRepository roleRepository;
+
+    private volatile Map<ERole, Role> rolesByName = Map.of();
+    private volatile Map<String, ERole> namesById = Map.of();
+
+    @Autowired
+    public RoleRegistry(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    @PostConstruct
+    void load() {
+        Map<ERole, Role> byName = new EnumMap<>(ERole.class);
+        Map<String, ERole> byId = new HashMap<>();
+        for (ERole name : ERole.values()) {
+            Role role = roleRepository.findByName(name).orElseGet(() -> {
+                logger.info("Role {} created.", name);
+                return roleRepository.save(new Role(name));
+            });
+            byName.put(name, role);
+            byId.put(role.getId(), name);
+        }
+        rolesByName = Map.copyOf(byName);
+        namesById = Map.copyOf(byId);
+        logger.info("Role registry loaded: {}", rolesByName.keySet());
+    }
+
+    /**
+     * Chuyển tên vai trò do client gửi lên ("role_admin", " ROLE_USER ") thành ERole.
+     * Trả về Optional.empty() nếu tên không được hỗ trợ.
+     */
+    public Optional<ERole> resolve(String roleName) {
+        if (roleName == null) {
+            return Optional.empty();
+        }
+        try {
+            ERole name = ERole.valueOf(roleName.trim().toUpperCase(Locale.ROOT));
+            return rolesByName.containsKey(name) ? Optional.of(name) : Optional.empty();
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    // ERole tương ứng với ID của document "roles" (dùng khi đọc các tham chiếu @DBRef cũ)
+    public Optional<ERole> findById(String roleId) {
+        return Optional.ofNullable(namesById.get(roleId));
+    }
+}
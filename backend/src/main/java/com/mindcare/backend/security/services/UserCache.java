@@ -0,0 +1,142 @@
+package com.mindcare.backend.security.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mindcare.backend.model.User;
+import com.mindcare.backend.repository.UserRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Cache trong bộ nhớ của User theo ID và theo username, dùng cho đăng nhập (loadUserByUsername),
+ * JwtAuthenticationFilter và các service đọc User theo ID.
+ *
+ * Mọi service ghi vào collection "users" phải gọi {@link #evict} sau khi lưu; tín hiệu được phát tới các instance
+ * khác qua {@link UserCacheBroadcaster}. Không có kênh phát (mặc định) thì instance khác thấy thay đổi sau tối đa
+ * một TTL (app.users.cache.ttl). Cache luôn trả về bản sao: service có thể sửa User mà không ảnh hưởng tới cache.
+ * Chỉ dùng cho các thao tác đọc: thao tác nào lưu lại User phải đọc User trực tiếp từ UserRepository,
+ * nếu không bản cũ trong cache có thể ghi đè mật khẩu, token_version hoặc cờ deleted mới hơn.
+ * Tỉ lệ trúng cache: metric users.cache.hit.ratio (và cache.gets của Micrometer).
+ * User đã bị đánh dấu deleted (đang được xóa nền) được coi như không tồn tại.
+ */
+@Component
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final UserCacheBroadcaster broadcaster;
+    private final boolean enabled;
+    private final Cache<String, User> usersById;
+    // username -> ID; User được đọc qua usersById nên chỉ có một bản của mỗi user trong cache
+    private final Cache<String, String> idsByUsername;
+
+    @Autowired
+    public UserCache(UserRepository userRepository,
+                     UserCacheBroadcaster broadcaster,
+                     @Value("${app.users.cache.enabled:true}") boolean enabled,
+                     @Value("${app.users.cache.max-entries:10000}") long maxEntries,
+                     @Value("${app.users.cache.ttl:60s}") Duration ttl,
+                     MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.broadcaster = broadcaster;
+        this.enabled = enabled;
+        this.usersById = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.idsByUsername = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, usersById, "users.by_id");
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByUsername, "users.by_username");
+        Gauge.builder("users.cache.hit.ratio", usersById, cache -> cache.stats().hitRate())
+                .tag("cache", "by_id")
+                .description("Tỉ lệ trúng cache User theo ID")
+                .register(meterRegistry);
+        Gauge.builder("users.cache.hit.ratio", idsByUsername, cache -> cache.stats().hitRate())
+                .tag("cache", "by_username")
+                .description("Tỉ lệ trúng cache User theo username")
+                .register(meterRegistry);
+        broadcaster.subscribe(this::evictLocal);
+    }
+
+    public Optional<User> findById(String userId) {
+        if (!enabled) {
+            return userRepository.findById(userId).filter(UserCache::isActive);
+        }
+        // User không tồn tại thì hàm nạp trả về null và Caffeine không lưu gì
+        User cached = usersById.get(userId, id -> userRepository.findById(id).map(UserCache::copyOf).orElse(null));
+        return Optional.ofNullable(cached).filter(UserCache::isActive).map(UserCache::copyOf);
+    }
+
+    public Optional<User> findByUsername(String username) {
+        if (!enabled) {
+            return userRepository.findByUsername(username).filter(UserCache::isActive);
+        }
+        String userId = idsByUsername.get(username, name -> userRepository.findByUsername(name)
+                .map(user -> {
+                    usersById.put(user.getId(), copyOf(user));
+                    return user.getId();
+                })
+                .orElse(null));
+        if (userId == null) {
+            return Optional.empty();
+        }
+        Optional<User> user = findById(userId);
+        if (user.isPresent() && username.equals(user.get().getUsername())) {
+            return user;
+        }
+        // Username đã đổi trên instance khác mà chưa nhận được tín hiệu: đọc lại từ DB
+        idsByUsername.invalidate(username);
+        return userRepository.findByUsername(username).filter(UserCache::isActive);
+    }
+
+    /**
+     * Xóa user khỏi cache của mọi instance. Gọi sau khi đã lưu (hoặc xóa) User,
+     * với cả username cũ lẫn username mới nếu username thay đổi.
+     */
+    public void evict(String userId, String... usernames) {
+        List<String> names = Arrays.stream(usernames).filter(Objects::nonNull).toList();
+        evictLocal(userId, names);
+        broadcaster.publish(userId, names);
+    }
+
+    private void evictLocal(String userId, Collection<String> usernames) {
+        if (userId != null) {
+            usersById.invalidate(userId);
+        }
+        idsByUsername.invalidateAll(usernames);
+    }
+
+    private static boolean isActive(User user) {
+        return !user.isDeleted();
+    }
+
+    private static User copyOf(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        copy.setAvatarUrl(user.getAvatarUrl());
+        copy.setRoles(user.getRoles() != null ? new HashSet<>(user.getRoles()) : new HashSet<>());
+        copy.setTokenVersion(user.getTokenVersion());
+        copy.setDeleted(user.isDeleted());
+        copy.setCreatedAt(user.getCreatedAt());
+        copy.setUpdatedAt(user.getUpdatedAt());
+        return copy;
+    }
+}
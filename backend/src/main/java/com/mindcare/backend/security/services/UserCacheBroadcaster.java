@@ -0,0 +1,18 @@
+package com.mindcare.backend.security.services;
+
+import java.util.Collection;
+import java.util.function.BiConsumer;
+
+/**
+ * Kênh phát tín hiệu xóa cache user giữa các instance backend. Chọn bằng {@code app.users.cache.broadcast}:
+ * - none (mặc định): không phát gì, các instance khác thấy thay đổi sau tối đa một TTL của UserCache;
+ * - mongo: ghi tín hiệu vào collection "user_cache_invalidations", các instance khác đọc định kỳ.
+ */
+public interface UserCacheBroadcaster {
+
+    // Báo cho các instance khác xóa user này (theo ID và các username cũ/mới) khỏi cache của họ
+    void publish(String userId, Collection<String> usernames);
+
+    // Đăng ký hàm được gọi khi nhận tín hiệu từ instance khác (không gọi lại cho tín hiệu của chính instance này)
+    void subscribe(BiConsumer<String, Collection<String>> listener);
+}
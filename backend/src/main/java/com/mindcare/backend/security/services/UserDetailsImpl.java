@@ -23,19 +23,26 @@ public class UserDetailsImpl implements UserDetails {
     private final String avatarUrl; // Thêm avatarUrl nếu bạn muốn dùng trong UserDetails
 
     private final Collection<? extends GrantedAuthority> authorities;
+    private final long tokenVersion; // token_version của User tại thời điểm tạo (xem TokenVersionCache)
 
     public UserDetailsImpl(String id, String username, String password, String avatarUrl,
                            Collection<? extends GrantedAuthority> authorities) {
+        this(id, username, password, avatarUrl, authorities, 0);
+    }
+
+    public UserDetailsImpl(String id, String username, String password, String avatarUrl,
+                           Collection<? extends GrantedAuthority> authorities, long tokenVersion) {
         this.id = id;
         this.username = username;
         this.password = password;
         this.avatarUrl = avatarUrl;
         this.authorities = authorities;
+        this.tokenVersion = tokenVersion;
     }
 
     public static UserDetailsImpl build(User user) {
         List<GrantedAuthority> authorities = user.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority(role.getName().name()))
+                .map(role -> new SimpleGrantedAuthority(role.name()))
                 .collect(Collectors.toList());
 
         return new UserDetailsImpl(
@@ -43,7 +50,8 @@ public class UserDetailsImpl implements UserDetails {
                 user.getUsername(),
                 user.getPassword(),
                 user.getAvatarUrl(), // Lấy avatarUrl từ User entity
-                authorities);
+                authorities,
+                user.getTokenVersion());
     }
 
     @Override
@@ -59,6 +67,10 @@ public class UserDetailsImpl implements UserDetails {
         return avatarUrl;
     }
 
+    public long getTokenVersion() {
+        return tokenVersion;
+    }
+
     @Override
     public String getPassword() {
         return password;
@@ -1,7 +1,6 @@
 package com.mindcare.backend.security.services;
 
 import com.mindcare.backend.model.User;
-import com.mindcare.backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -12,17 +11,17 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
 
-    private final UserRepository userRepository;
+    private final UserCache userCache;
 
     @Autowired
-    public UserDetailsServiceImpl(UserRepository userRepository) {
-        this.userRepository = userRepository;
+    public UserDetailsServiceImpl(UserCache userCache) {
+        this.userCache = userCache;
     }
 
     @Override
-    @Transactional // Đảm bảo các lazy-loaded collections (như roles) được tải
+    @Transactional(readOnly = true) // Vai trò nằm sẵn trong document User: tối đa một truy vấn (không có nếu trúng UserCache)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
+        User user = userCache.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User Not Found with username: " + username));
 
         return UserDetailsImpl.build(user);
@@ -0,0 +1,278 @@
+package com.mindcare.backend.service.ai;
+
+import com.mindcare.backend.exception.AiServiceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Kiểm soát số lời gọi đồng thời tới Ollama.
+ *
+ * Tối đa {@code ai.gate.max-in-flight} lời gọi được chạy cùng lúc; các lời gọi còn lại chờ trong
+ * hàng đợi có giới hạn {@code ai.gate.queue-capacity}. Hàng đợi được chia theo người dùng và
+ * cấp lượt theo vòng (round-robin) nên một người gửi nhiều tin nhắn không chiếm hết lượt của
+ * người khác. Khi hàng đợi đầy, lời gọi bị từ chối ngay bằng AiServiceException thay vì chờ timeout.
+ * Lời gọi chờ quá {@code ai.gate.max-queue-wait} bị bỏ khỏi hàng đợi và kết thúc bằng AiServiceException
+ * (đường đồng bộ block() trên lượt chờ, nên thread của servlet không bị giữ lâu hơn thời gian này).
+ *
+ * Việc chờ lượt là non-blocking: không có thread nào bị giữ trong lúc chờ.
+ */
+@Component
+public class AiAdmissionGate {
+
+    private static final Logger logger = LoggerFactory.getLogger(AiAdmissionGate.class);
+
+    private final int maxInFlight;
+    private final int queueCapacity;
+    private final int maxQueuedPerUser;
+    private final Duration maxQueueWait;
+
+    // Mọi trạng thái dưới đây được bảo vệ bởi khóa của chính đối tượng này
+    private final Map<String, Deque<Waiter>> waitersByUser = new HashMap<>();
+    private final Deque<String> userRotation = new ArrayDeque<>();
+    private int inFlight;
+    private int queued;
+
+    private final Counter rejectedCounter;
+    private final Counter queueTimeoutCounter;
+    private final Timer queueWaitTimer;
+
+    @Autowired
+    public AiAdmissionGate(@Value("${ai.gate.max-in-flight:2}") int maxInFlight,
+                           @Value("${ai.gate.queue-capacity:50}") int queueCapacity,
+                           @Value("${ai.gate.max-queued-per-user:5}") int maxQueuedPerUser,
+                           @Value("${ai.gate.max-queue-wait:30s}") Duration maxQueueWait,
+                           MeterRegistry meterRegistry) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("ai.gate.max-in-flight must be at least 1");
+        }
+        this.maxInFlight = maxInFlight;
+        this.queueCapacity = queueCapacity;
+        this.maxQueuedPerUser = maxQueuedPerUser;
+        this.maxQueueWait = maxQueueWait;
+
+        Gauge.builder("ai.gate.queue.depth", this, AiAdmissionGate::queuedCount)
+                .description("Số lời gọi AI đang chờ lượt")
+                .register(meterRegistry);
+        Gauge.builder("ai.gate.in.flight", this, AiAdmissionGate::inFlightCount)
+                .description("Số lời gọi AI đã được cấp lượt và đang chạy")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("ai.gate.rejected")
+                .description("Số lời gọi AI bị từ chối vì hàng đợi đầy")
+                .register(meterRegistry);
+        this.queueTimeoutCounter = Counter.builder("ai.gate.queue.timeouts")
+                .description("Số lời gọi AI bị bỏ vì chờ lượt quá ai.gate.max-queue-wait")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("ai.gate.queue.wait")
+                .description("Thời gian một lời gọi AI chờ lượt")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Chạy lời gọi (không stream) khi đến lượt của người dùng; lượt được trả lại khi lời gọi kết thúc.
+     */
+    public <T> Mono<T> submit(String userId, Supplier<Mono<T>> call) {
+        return Mono.usingWhen(acquire(userId), permit -> call.get(),
+                Permit::release, (permit, e) -> permit.release(), Permit::release);
+    }
+
+    /**
+     * Chạy lời gọi dạng stream khi đến lượt; lượt được giữ cho đến khi stream kết thúc hoặc bị hủy.
+     */
+    public <T> Flux<T> submitStream(String userId, Supplier<Flux<T>> call) {
+        return Flux.usingWhen(acquire(userId), permit -> call.get(),
+                Permit::release, (permit, e) -> permit.release(), Permit::release);
+    }
+
+    public synchronized int queuedCount() {
+        return queued;
+    }
+
+    public synchronized int inFlightCount() {
+        return inFlight;
+    }
+
+    private Mono<Permit> acquire(String userId) {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(userId, sink, System.nanoTime());
+            sink.onCancel(() -> cancel(waiter));
+            String rejection;
+            boolean grantedImmediately;
+            synchronized (this) {
+                rejection = tryEnqueueOrGrant(waiter);
+                grantedImmediately = waiter.permit != null;
+            }
+            if (rejection != null) {
+                rejectedCounter.increment();
+                logger.warn("AI admission rejected for UserID: {}. {} (in flight: {}, queued: {})",
+                        userId, rejection, inFlightCount(), queuedCount());
+                sink.error(new AiServiceException("Hệ thống AI đang quá tải, vui lòng thử lại sau ít phút."));
+                return;
+            }
+            if (grantedImmediately) {
+                waiter.deliver(queueWaitTimer);
+            } else if (!maxQueueWait.isZero() && !maxQueueWait.isNegative()) {
+                waiter.timeout = Schedulers.parallel()
+                        .schedule(() -> expire(waiter), maxQueueWait.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    // Hết thời gian chờ: nếu lời gọi vẫn còn trong hàng đợi (chưa được cấp lượt) thì bỏ nó và báo lỗi
+    private void expire(Waiter waiter) {
+        if (!removeFromQueue(waiter)) {
+            return;
+        }
+        queueTimeoutCounter.increment();
+        logger.warn("AI admission timed out for UserID: {} after waiting {} (in flight: {}, queued: {})",
+                waiter.userId, maxQueueWait, inFlightCount(), queuedCount());
+        waiter.sink.error(new AiServiceException("Hệ thống AI đang quá tải, vui lòng thử lại sau ít phút."));
+    }
+
+    // Trả về lý do từ chối, hoặc null nếu lời gọi đã được cấp lượt hay đưa vào hàng đợi
+    private String tryEnqueueOrGrant(Waiter waiter) {
+        if (waiter.cancelled) {
+            return null;
+        }
+        if (inFlight < maxInFlight && queued == 0) {
+            inFlight++;
+            waiter.permit = new Permit();
+            return null;
+        }
+        if (queued >= queueCapacity) {
+            return "Queue is full";
+        }
+        Deque<Waiter> userQueue = waitersByUser.get(waiter.userId);
+        if (userQueue != null && userQueue.size() >= maxQueuedPerUser) {
+            return "Per-user queue limit reached";
+        }
+        if (userQueue == null) {
+            userQueue = new ArrayDeque<>();
+            waitersByUser.put(waiter.userId, userQueue);
+            userRotation.addLast(waiter.userId);
+        }
+        userQueue.addLast(waiter);
+        queued++;
+        return null;
+    }
+
+    // Client hủy khi đang chờ: bỏ lời gọi khỏi hàng đợi.
+    // Nếu lượt vừa được cấp nhưng chưa tới tay subscriber thì trả lại lượt (release là idempotent).
+    private void cancel(Waiter waiter) {
+        waiter.cancelled = true;
+        waiter.disposeTimeout();
+        Permit grantedPermit;
+        synchronized (this) {
+            if (removeFromQueue(waiter)) {
+                return;
+            }
+            grantedPermit = waiter.permit;
+        }
+        if (grantedPermit != null) {
+            grantedPermit.releaseNow();
+        }
+    }
+
+    // true nếu lời gọi còn trong hàng đợi và đã được bỏ ra
+    private synchronized boolean removeFromQueue(Waiter waiter) {
+        Deque<Waiter> userQueue = waitersByUser.get(waiter.userId);
+        if (userQueue == null || !userQueue.remove(waiter)) {
+            return false;
+        }
+        queued--;
+        if (userQueue.isEmpty()) {
+            waitersByUser.remove(waiter.userId);
+            userRotation.remove(waiter.userId);
+        }
+        return true;
+    }
+
+    // Trả lượt và cấp cho người dùng kế tiếp trong vòng quay.
+    // Việc giao lượt (chạy tiếp lời gọi của người chờ) nằm ngoài khóa.
+    private void releaseAndGrantNext() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            while (inFlight < maxInFlight && !userRotation.isEmpty()) {
+                String nextUser = userRotation.pollFirst();
+                Deque<Waiter> userQueue = waitersByUser.get(nextUser);
+                Waiter next = userQueue.pollFirst();
+                queued--;
+                if (userQueue.isEmpty()) {
+                    waitersByUser.remove(nextUser);
+                } else {
+                    userRotation.addLast(nextUser);
+                }
+                inFlight++;
+                next.permit = new Permit();
+                granted.add(next);
+            }
+        }
+        granted.forEach(waiter -> waiter.deliver(queueWaitTimer));
+    }
+
+    private final class Waiter {
+        private final String userId;
+        private final MonoSink<Permit> sink;
+        private final long enqueuedAtNanos;
+        private Permit permit; // Gán dưới khóa khi lời gọi được cấp lượt
+        private volatile boolean cancelled;
+        private volatile Disposable timeout; // Hẹn giờ ai.gate.max-queue-wait, chỉ có khi lời gọi phải xếp hàng
+
+        private Waiter(String userId, MonoSink<Permit> sink, long enqueuedAtNanos) {
+            this.userId = userId;
+            this.sink = sink;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+
+        private void deliver(Timer waitTimer) {
+            disposeTimeout();
+            waitTimer.record(System.nanoTime() - enqueuedAtNanos, TimeUnit.NANOSECONDS);
+            sink.success(permit);
+        }
+
+        private void disposeTimeout() {
+            Disposable scheduled = timeout;
+            if (scheduled != null) {
+                scheduled.dispose();
+            }
+        }
+    }
+
+    private final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Mono<Void> release() {
+            return Mono.fromRunnable(this::releaseNow);
+        }
+
+        private void releaseNow() {
+            if (released.compareAndSet(false, true)) {
+                releaseAndGrantNext();
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.mindcare.backend.service.ai;
+
+import com.mindcare.backend.dto.ai.OllamaChatResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Các chỉ số Micrometer cho lời gọi LLM, gắn tag theo tên model.
+ *
+ * - Chỉ số Ollama tự báo (load, prompt eval, eval, total; đơn vị nanosecond) và số token.
+ * - Tốc độ sinh token (tokens/giây) tính từ eval_count / eval_duration.
+ * - Thời gian từ lúc gửi request đến token đầu tiên, thời gian end-to-end và số request đang chạy.
+ *
+ * Xem qua /actuator/prometheus hoặc /actuator/metrics.
+ */
+@Component
+public class AiMetrics {
+
+    public static final String MODE_SYNC = "sync";
+    public static final String MODE_STREAM = "stream";
+
+    private final MeterRegistry meterRegistry;
+    private final Duration coldLoadThreshold;
+    private final Map<String, AtomicInteger> inFlightByModel = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AiMetrics(MeterRegistry meterRegistry,
+                     @Value("${ai.metrics.cold-load-threshold:500ms}") Duration coldLoadThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.coldLoadThreshold = coldLoadThreshold;
+    }
+
+    // Ghi nhận các chỉ số từ response cuối cùng (done=true) của Ollama
+    public void recordOllamaResponse(String model, OllamaChatResponse response) {
+        if (response == null) {
+            return;
+        }
+        recordNanos("ollama.total.duration", "Tổng thời gian Ollama xử lý request", model, response.getTotalDuration());
+        recordNanos("ollama.load.duration", "Thời gian Ollama nạp model trước khi xử lý request", model, response.getLoadDuration());
+        recordNanos("ollama.prompt.eval.duration", "Thời gian Ollama xử lý prompt (thấp khi prompt cache được tái sử dụng)", model, response.getPromptEvalDuration());
+        recordNanos("ollama.eval.duration", "Thời gian Ollama sinh câu trả lời", model, response.getEvalDuration());
+
+        if (response.getLoadDuration() != null && Duration.ofNanos(response.getLoadDuration()).compareTo(coldLoadThreshold) > 0) {
+            Counter.builder("ollama.cold.loads")
+                    .description("Số request phải chờ nạp model (load_duration vượt ngưỡng)")
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .increment();
+        }
+        if (response.getPromptEvalCount() != null) {
+            Counter.builder("ollama.prompt.tokens")
+                    .description("Tổng số token prompt đã được Ollama xử lý")
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .increment(response.getPromptEvalCount());
+        }
+        if (response.getEvalCount() != null) {
+            Counter.builder("ollama.completion.tokens")
+                    .description("Tổng số token Ollama đã sinh ra")
+                    .tag("model", model)
+                    .register(meterRegistry)
+                    .increment(response.getEvalCount());
+            if (response.getEvalDuration() != null && response.getEvalDuration() > 0) {
+                double tokensPerSecond = response.getEvalCount() / (response.getEvalDuration() / 1_000_000_000.0);
+                DistributionSummary.builder("ollama.eval.tokens.per.second")
+                        .description("Tốc độ sinh token của model")
+                        .tag("model", model)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(tokensPerSecond);
+            }
+        }
+    }
+
+    /**
+     * Đo một lời gọi AI không stream: thời gian end-to-end (tag outcome) và số request đang chạy.
+     */
+    public <T> Mono<T> instrument(String model, Mono<T> call) {
+        return Mono.defer(() -> {
+            AtomicInteger inFlight = inFlight(model);
+            inFlight.incrementAndGet();
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call
+                    .doOnSuccess(value -> sample.stop(requestTimer(model, MODE_SYNC, "success")))
+                    .doOnError(e -> sample.stop(requestTimer(model, MODE_SYNC, "error")))
+                    .doOnCancel(() -> sample.stop(requestTimer(model, MODE_SYNC, "cancelled")))
+                    .doFinally(signal -> inFlight.decrementAndGet());
+        });
+    }
+
+    /**
+     * Đo một lời gọi AI dạng stream: thêm thời gian đến token đầu tiên (time-to-first-token).
+     */
+    public <T> Flux<T> instrumentStream(String model, Flux<T> stream) {
+        return Flux.defer(() -> {
+            AtomicInteger inFlight = inFlight(model);
+            inFlight.incrementAndGet();
+            Timer.Sample sample = Timer.start(meterRegistry);
+            long startNanos = System.nanoTime();
+            AtomicBoolean firstTokenSeen = new AtomicBoolean(false);
+            return stream
+                    .doOnNext(item -> {
+                        if (firstTokenSeen.compareAndSet(false, true)) {
+                            Timer.builder("ai.time.to.first.token")
+                                    .description("Thời gian từ lúc gửi request đến khi nhận token đầu tiên")
+                                    .tag("model", model)
+                                    .publishPercentileHistogram()
+                                    .register(meterRegistry)
+                                    .record(Duration.ofNanos(System.nanoTime() - startNanos));
+                        }
+                    })
+                    .doOnComplete(() -> sample.stop(requestTimer(model, MODE_STREAM, "success")))
+                    .doOnError(e -> sample.stop(requestTimer(model, MODE_STREAM, "error")))
+                    .doOnCancel(() -> sample.stop(requestTimer(model, MODE_STREAM, "cancelled")))
+                    .doFinally(signal -> inFlight.decrementAndGet());
+        });
+    }
+
+    private Timer requestTimer(String model, String mode, String outcome) {
+        return Timer.builder("ai.request.duration")
+                .description("Thời gian end-to-end của một lời gọi AI")
+                .tags("model", model, "mode", mode, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Gauge số request đang chạy, đăng ký một lần cho mỗi model
+    private AtomicInteger inFlight(String model) {
+        return inFlightByModel.computeIfAbsent(model, m -> {
+            AtomicInteger counter = new AtomicInteger();
+            Gauge.builder("ai.requests.in.flight", counter, AtomicInteger::get)
+                    .description("Số lời gọi AI đang chờ model trả lời")
+                    .tag("model", m)
+                    .register(meterRegistry);
+            return counter;
+        });
+    }
+
+    private void recordNanos(String name, String description, String model, Long nanos) {
+        if (nanos == null) {
+            return;
+        }
+        Timer.builder(name)
+                .description(description)
+                .tag("model", model)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Duration.ofNanos(nanos));
+    }
+}
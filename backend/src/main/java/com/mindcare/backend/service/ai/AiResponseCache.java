@@ -0,0 +1,209 @@
+package com.mindcare.backend.service.ai;
+
+import com.mindcare.backend.dto.conversation.MessageDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Cache câu trả lời AI cho các ngữ cảnh ngắn lặp lại (ví dụ: lời chào, "hôm nay mình thấy lo lắng").
+ *
+ * Khóa cache = model + system prompt + toàn bộ history gửi cho model, sau khi chuẩn hóa (chữ thường, gộp khoảng trắng,
+ * bỏ dấu câu ở cuối): hai cuộc hội thoại chỉ dùng chung câu trả lời khi model nhận đúng cùng một ngữ cảnh.
+ * History có nhiều hơn {@code ai.cache.key-turns} tin nhắn, vượt {@code ai.cache.max-context-tokens} hoặc có bản tóm tắt
+ * thì không dùng cache.
+ * Các mục hết hạn sau {@code ai.cache.ttl}; khi vượt số mục hoặc tổng số ký tự cho phép, mục ít dùng nhất bị loại (LRU).
+ *
+ * Cache nằm giữa ConversationServiceImpl và AiChatService nên không phụ thuộc vào cài đặt model cụ thể.
+ */
+@Component
+public class AiResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AiResponseCache.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\p{Punct}\\u2026\\s]+$");
+
+    private final boolean enabled;
+    private final int keyTurns;
+    private final int maxContextTokens;
+    private final int maxEntries;
+    private final long maxTotalChars;
+    private final Duration ttl;
+    private final String keyPrefix;
+    private final MeterRegistry meterRegistry;
+
+    // LinkedHashMap theo thứ tự truy cập: phần tử đầu là phần tử ít được dùng nhất
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalChars;
+
+    @Autowired
+    public AiResponseCache(@Value("${ai.cache.enabled:false}") boolean enabled,
+                           @Value("${ai.cache.key-turns:3}") int keyTurns,
+                           @Value("${ai.cache.max-context-tokens:200}") int maxContextTokens,
+                           @Value("${ai.cache.max-entries:1000}") int maxEntries,
+                           @Value("${ai.cache.max-total-chars:2000000}") long maxTotalChars,
+                           @Value("${ai.cache.ttl:6h}") Duration ttl,
+                           @Value("${ollama.model.name}") String modelName,
+                           @Value("${gemma.system.prompt}") String systemPrompt,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.keyTurns = keyTurns;
+        this.maxContextTokens = maxContextTokens;
+        this.maxEntries = maxEntries;
+        this.maxTotalChars = maxTotalChars;
+        this.ttl = ttl;
+        this.keyPrefix = modelName + '\u0000' + normalize(systemPrompt) + '\u0000';
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("ai.cache.size", this, AiResponseCache::size)
+                .description("Số câu trả lời AI đang được cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Trả về câu trả lời đã cache cho history này, hoặc gọi AI và cache kết quả.
+     */
+    public Mono<String> getOrCompute(List<MessageDto> history, Supplier<Mono<String>> call) {
+        String key = keyFor(history);
+        if (key == null) {
+            record("bypass");
+            return call.get();
+        }
+        String cached = get(key);
+        if (cached != null) {
+            record("hit");
+            return Mono.just(cached);
+        }
+        record("miss");
+        return call.get().doOnNext(reply -> put(key, reply));
+    }
+
+    /**
+     * Như {@link #getOrCompute} cho chế độ stream: khi trúng cache, cả câu trả lời được phát thành một token;
+     * khi không trúng, câu trả lời được ghép lại từ các token và chỉ được cache nếu stream hoàn thành.
+     */
+    public Flux<String> getOrStream(List<MessageDto> history, Supplier<Flux<String>> call) {
+        String key = keyFor(history);
+        if (key == null) {
+            record("bypass");
+            return call.get();
+        }
+        String cached = get(key);
+        if (cached != null) {
+            record("hit");
+            return Flux.just(cached);
+        }
+        record("miss");
+        return Flux.defer(() -> {
+            StringBuilder assembled = new StringBuilder();
+            return call.get()
+                    .doOnNext(assembled::append)
+                    .doOnComplete(() -> put(key, assembled.toString()));
+        });
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // Trả về null nếu không dùng cache cho history này
+    private String keyFor(List<MessageDto> history) {
+        // Chỉ cache các cuộc hội thoại ngắn: khóa phải gồm mọi tin nhắn gửi cho model, nếu không hai cuộc hội thoại
+        // khác nhau ở các lượt đầu (có thể của hai người dùng khác nhau) sẽ nhận chung một câu trả lời
+        if (!enabled || history == null || history.isEmpty() || history.size() > keyTurns) {
+            return null;
+        }
+        int contextTokens = 0;
+        for (MessageDto message : history) {
+            if ("SYSTEM".equalsIgnoreCase(message.getSender())) {
+                return null; // Có bản tóm tắt: cuộc hội thoại đã dài
+            }
+            contextTokens += ConversationContextBuilder.estimateTokens(message.getContent());
+        }
+        if (contextTokens > maxContextTokens) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(keyPrefix);
+        for (MessageDto message : history) {
+            key.append(message.getSender().toUpperCase(Locale.ROOT)).append(':')
+                    .append(normalize(message.getContent())).append('\u0000');
+        }
+        return sha256(key.toString());
+    }
+
+    private synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.createdAtNanos() > ttl.toNanos()) {
+            entries.remove(key);
+            totalChars -= entry.reply().length();
+            return null;
+        }
+        return entry.reply();
+    }
+
+    private synchronized void put(String key, String reply) {
+        if (reply == null || reply.isBlank() || reply.length() > maxTotalChars) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(reply, System.nanoTime()));
+        if (previous != null) {
+            totalChars -= previous.reply().length();
+        }
+        totalChars += reply.length();
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalChars > maxTotalChars) && eldest.hasNext()) {
+            totalChars -= eldest.next().getValue().reply().length();
+            eldest.remove();
+            meterRegistry.counter("ai.cache.evictions").increment();
+        }
+        logger.debug("Cached AI reply ({} chars). Cache size: {} entries, {} chars", reply.length(), entries.size(), totalChars);
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("ai.cache.requests", "result", result).increment();
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC).toLowerCase(Locale.ROOT).strip();
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(normalized).replaceAll("");
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record Entry(String reply, long createdAtNanos) {
+    }
+}
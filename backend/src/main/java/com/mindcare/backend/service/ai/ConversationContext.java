@@ -0,0 +1,17 @@
+package com.mindcare.backend.service.ai;
+
+import com.mindcare.backend.dto.conversation.MessageDto;
+
+import java.util.List;
+
+/**
+ * Ngữ cảnh hội thoại sẽ gửi cho AI.
+ *
+ * @param history            các tin nhắn gần nhất vừa với ngân sách token, theo thứ tự thời gian tăng dần
+ * @param estimatedTokens    số token ước lượng của system prompt + history
+ * @param truncatedMessages  số tin nhắn cũ hơn không được gửi nguyên văn (bị bỏ hoặc đã nằm trong bản tóm tắt)
+ * @param summaryIncluded    history có bắt đầu bằng bản tóm tắt các lượt cũ hay không
+ */
+public record ConversationContext(List<MessageDto> history, int estimatedTokens, long truncatedMessages,
+                                  boolean summaryIncluded) {
+}
@@ -0,0 +1,141 @@
+package com.mindcare.backend.service.ai;
+
+import com.mindcare.backend.dto.conversation.MessageDto;
+import com.mindcare.backend.model.ConversationSummary;
+import com.mindcare.backend.model.Message;
+import com.mindcare.backend.repository.ConversationSummaryRepository;
+import com.mindcare.backend.repository.MessageCursor;
+import com.mindcare.backend.repository.MessageStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Dựng ngữ cảnh gửi cho AI theo cửa sổ trượt: system prompt + bản tóm tắt (nếu có)
+ * + các lượt gần nhất vừa với ngân sách token.
+ * Tin nhắn được đọc theo trang từ mới đến cũ, nên số document đọc từ MongoDB
+ * tỉ lệ với kích thước cửa sổ chứ không phải với độ dài cuộc hội thoại.
+ */
+@Component
+public class ConversationContextBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationContextBuilder.class);
+
+    // Ước lượng thô: trung bình ~3 ký tự/token cho tiếng Việt có dấu với tokenizer của Gemma
+    private static final int CHARS_PER_TOKEN = 3;
+    // Chi phí cố định của mỗi tin nhắn trong chat template (role, các token phân tách)
+    private static final int TOKENS_PER_MESSAGE_OVERHEAD = 4;
+
+    private final MessageStore messageStore;
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final int maxTokens;
+    private final int maxMessages;
+    private final int pageSize;
+    private final int systemPromptTokens;
+
+    @Autowired
+    public ConversationContextBuilder(MessageStore messageStore,
+                                      ConversationSummaryRepository conversationSummaryRepository,
+                                      @Value("${ai.context.max-tokens:1536}") int maxTokens,
+                                      @Value("${ai.context.max-messages:40}") int maxMessages,
+                                      @Value("${ai.context.page-size:20}") int pageSize,
+                                      @Value("${gemma.system.prompt}") String systemPrompt) {
+        this.messageStore = messageStore;
+        this.conversationSummaryRepository = conversationSummaryRepository;
+        this.maxTokens = maxTokens;
+        this.maxMessages = maxMessages;
+        this.pageSize = pageSize;
+        this.systemPromptTokens = estimateTokens(systemPrompt);
+    }
+
+    /**
+     * Lấy các tin nhắn gần nhất của cuộc hội thoại vừa với ngân sách token.
+     * Nếu có bản tóm tắt, nó được đặt đầu history (sender "SYSTEM") và các tin nhắn
+     * đã nằm trong bản tóm tắt không được gửi lại.
+     * Tin nhắn mới nhất (tin nhắn user vừa gửi) luôn được giữ lại dù vượt ngân sách.
+     */
+    public ConversationContext build(String conversationId) {
+        List<MessageDto> newestFirst = new ArrayList<>();
+        int usedTokens = systemPromptTokens;
+
+        Optional<ConversationSummary> summary = conversationSummaryRepository.findByConversationId(conversationId)
+                .filter(s -> s.getSummary() != null && !s.getSummary().isBlank());
+        MessageDto summaryMessage = summary
+                .map(s -> new MessageDto(null, conversationId, "SYSTEM",
+                        "Tóm tắt các phần trước của cuộc hội thoại: " + s.getSummary(), s.getSummarizedUntil()))
+                .orElse(null);
+        LocalDateTime checkpoint = summary.map(ConversationSummary::getSummarizedUntil).orElse(null);
+        if (summaryMessage != null) {
+            usedTokens += estimateTokens(summaryMessage.getContent()) + TOKENS_PER_MESSAGE_OVERHEAD;
+        }
+        boolean budgetExhausted = false;
+        MessageCursor before = null;
+
+        while (!budgetExhausted) {
+            // Trang keyset (tăng dần, có thể thừa một phần tử cũ nhất ở đầu để biết còn trang trước hay không)
+            List<Message> page = messageStore.findPage(conversationId, before, null, pageSize);
+            boolean hasOlder = page.size() > pageSize;
+            List<Message> pageMessages = hasOlder ? page.subList(1, page.size()) : page;
+            if (pageMessages.isEmpty()) {
+                break;
+            }
+            Message oldest = pageMessages.get(0);
+            before = new MessageCursor(oldest.getTimestamp(), oldest.getId());
+
+            for (int i = pageMessages.size() - 1; i >= 0; i--) {
+                Message message = pageMessages.get(i);
+                int messageTokens = estimateTokens(message.getContent()) + TOKENS_PER_MESSAGE_OVERHEAD;
+                boolean isNewest = newestFirst.isEmpty();
+                boolean alreadySummarized = checkpoint != null && !message.getTimestamp().isAfter(checkpoint);
+                if (!isNewest && (alreadySummarized || usedTokens + messageTokens > maxTokens || newestFirst.size() >= maxMessages)) {
+                    budgetExhausted = true;
+                    break;
+                }
+                newestFirst.add(mapToMessageDto(message));
+                usedTokens += messageTokens;
+            }
+            if (!hasOlder) {
+                break;
+            }
+        }
+
+        // Chỉ đếm tổng số tin nhắn khi ngữ cảnh thực sự bị cắt bớt
+        long totalMessages = budgetExhausted ? messageStore.count(conversationId) : newestFirst.size();
+        long truncatedMessages = totalMessages - newestFirst.size();
+        if (summaryMessage != null) {
+            newestFirst.add(summaryMessage); // Sau khi đảo ngược, bản tóm tắt sẽ nằm đầu history
+        }
+        Collections.reverse(newestFirst);
+        if (truncatedMessages > 0) {
+            logger.info("Context for ConvID: {} truncated. Kept {} of {} messages (~{} tokens, budget {}, summary: {}).",
+                    conversationId, newestFirst.size(), totalMessages, usedTokens, maxTokens, summaryMessage != null);
+        }
+        return new ConversationContext(newestFirst, usedTokens, truncatedMessages, summaryMessage != null);
+    }
+
+    // Ước lượng số token của một đoạn văn bản (không cần tokenizer thật, chỉ dùng để giới hạn kích thước prompt)
+    public static int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private MessageDto mapToMessageDto(Message message) {
+        return new MessageDto(
+                message.getId(),
+                message.getConversationId(),
+                message.getSender(),
+                message.getContent(),
+                message.getTimestamp()
+        );
+    }
+}
@@ -0,0 +1,161 @@
+package com.mindcare.backend.service.ai;
+
+import com.mindcare.backend.dto.conversation.MessageDto;
+import com.mindcare.backend.model.ConversationSummary;
+import com.mindcare.backend.model.Message;
+import com.mindcare.backend.repository.ConversationSummaryRepository;
+import com.mindcare.backend.repository.MessageStore;
+import com.mindcare.backend.service.interfaces.AiChatService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tóm tắt cuốn chiếu các lượt cũ của cuộc hội thoại ở chế độ nền.
+ * Sau mỗi lượt trả lời, cuộc hội thoại được đánh dấu "dirty"; job định kỳ chỉ tóm tắt
+ * các tin nhắn nằm giữa checkpoint trước và cửa sổ các lượt gần nhất, rồi gộp vào bản tóm tắt cũ.
+ */
+@Component
+public class ConversationSummarizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationSummarizer.class);
+
+    // Mốc bắt đầu cho cuộc hội thoại chưa có bản tóm tắt nào
+    private static final LocalDateTime NO_CHECKPOINT = LocalDateTime.of(1970, 1, 1, 0, 0);
+    // Khóa hàng đợi của tác vụ tóm tắt trong AiAdmissionGate (không trùng với ID người dùng)
+    private static final String ADMISSION_KEY = "system:summarizer";
+
+    private static final String SUMMARY_INSTRUCTION =
+            "Bạn đang ghi chép hồ sơ cho một buổi trò chuyện hỗ trợ tâm lý. " +
+            "Hãy cập nhật bản tóm tắt dưới đây bằng các lượt hội thoại mới được cung cấp. " +
+            "Giữ lại các chi tiết quan trọng: cảm xúc, vấn đề chính, sự kiện, mục tiêu và những gì đã thống nhất. " +
+            "Viết ngắn gọn ở ngôi thứ ba, tối đa 200 từ. Chỉ trả về nội dung bản tóm tắt.";
+
+    private final MessageStore messageStore;
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final AiChatService aiChatService;
+    private final AiAdmissionGate aiAdmissionGate;
+    private final Set<String> dirtyConversations = ConcurrentHashMap.newKeySet();
+
+    private final boolean enabled;
+    private final int keepRecentMessages;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final int maxSummaryChars;
+
+    @Autowired
+    public ConversationSummarizer(MessageStore messageStore,
+                                  ConversationSummaryRepository conversationSummaryRepository,
+                                  AiChatService aiChatService,
+                                  AiAdmissionGate aiAdmissionGate,
+                                  @Value("${ai.summary.enabled:true}") boolean enabled,
+                                  @Value("${ai.summary.keep-recent-messages:10}") int keepRecentMessages,
+                                  @Value("${ai.summary.min-batch-size:6}") int minBatchSize,
+                                  @Value("${ai.summary.max-batch-size:30}") int maxBatchSize,
+                                  @Value("${ai.summary.max-chars:1500}") int maxSummaryChars) {
+        this.messageStore = messageStore;
+        this.conversationSummaryRepository = conversationSummaryRepository;
+        this.aiChatService = aiChatService;
+        this.aiAdmissionGate = aiAdmissionGate;
+        this.enabled = enabled;
+        this.keepRecentMessages = keepRecentMessages;
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.maxSummaryChars = maxSummaryChars;
+    }
+
+    // Đánh dấu cuộc hội thoại có lượt mới, sẽ được xem xét ở lần chạy kế tiếp
+    public void markDirty(String conversationId) {
+        if (enabled) {
+            dirtyConversations.add(conversationId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ai.summary.interval-ms:60000}", initialDelayString = "${ai.summary.interval-ms:60000}")
+    public void summarizeDirtyConversations() {
+        if (!enabled || dirtyConversations.isEmpty()) {
+            return;
+        }
+        for (String conversationId : List.copyOf(dirtyConversations)) {
+            dirtyConversations.remove(conversationId);
+            try {
+                if (summarizeIncrementally(conversationId)) {
+                    // Còn tin nhắn cũ chưa tóm tắt (vượt quá maxBatchSize): xử lý tiếp ở lần chạy sau
+                    dirtyConversations.add(conversationId);
+                }
+            } catch (Exception e) {
+                logger.error("Failed to summarize ConvID: {}. Error: {}", conversationId, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Gộp các tin nhắn mới (nằm ngoài cửa sổ các lượt gần nhất) vào bản tóm tắt của cuộc hội thoại.
+     * Trả về true nếu vẫn còn tin nhắn cũ chưa được tóm tắt sau lần chạy này.
+     */
+    boolean summarizeIncrementally(String conversationId) {
+        List<Message> recentWindow = messageStore.findLatest(conversationId, keepRecentMessages);
+        if (recentWindow.size() < keepRecentMessages) {
+            return false; // Cuộc hội thoại còn ngắn, chưa cần tóm tắt
+        }
+        LocalDateTime windowStart = recentWindow.get(recentWindow.size() - 1).getTimestamp();
+
+        ConversationSummary summary = conversationSummaryRepository.findByConversationId(conversationId)
+                .orElseGet(() -> new ConversationSummary(conversationId));
+        LocalDateTime checkpoint = summary.getSummarizedUntil() != null ? summary.getSummarizedUntil() : NO_CHECKPOINT;
+
+        List<Message> pending = messageStore.findBetween(conversationId, checkpoint, windowStart, maxBatchSize + 1);
+        if (pending.size() < minBatchSize) {
+            return false;
+        }
+        boolean hasMore = pending.size() > maxBatchSize;
+        List<Message> batch = hasMore ? pending.subList(0, maxBatchSize) : pending;
+
+        // Đi qua cùng hàng đợi với người dùng (với một khóa riêng) để không chiếm hết lượt của họ
+        String updatedSummary = aiAdmissionGate.submit(ADMISSION_KEY, () -> aiChatService.getAiResponseAsync(
+                conversationId, buildSummaryPrompt(summary.getSummary(), batch), null)).block();
+        if (updatedSummary == null || updatedSummary.isBlank()) {
+            logger.warn("Summarizer received empty summary for ConvID: {}. Checkpoint not advanced.", conversationId);
+            return false;
+        }
+        if (updatedSummary.length() > maxSummaryChars) {
+            updatedSummary = updatedSummary.substring(0, maxSummaryChars);
+        }
+
+        summary.setSummary(updatedSummary.trim());
+        summary.setSummarizedUntil(batch.get(batch.size() - 1).getTimestamp());
+        summary.setSummarizedMessageCount(summary.getSummarizedMessageCount() + batch.size());
+        summary.setUpdatedAt(LocalDateTime.now());
+        conversationSummaryRepository.save(summary);
+        logger.info("Summary updated for ConvID: {}. Added {} messages (total {}), checkpoint: {}",
+                conversationId, batch.size(), summary.getSummarizedMessageCount(), summary.getSummarizedUntil());
+        return hasMore;
+    }
+
+    // Prompt tóm tắt: chỉ dẫn (role system) + bản tóm tắt cũ và các lượt mới dưới dạng một tin nhắn user
+    private List<MessageDto> buildSummaryPrompt(String previousSummary, List<Message> batch) {
+        StringBuilder transcript = new StringBuilder();
+        transcript.append("Bản tóm tắt hiện tại:\n")
+                .append(previousSummary != null && !previousSummary.isBlank() ? previousSummary : "(chưa có)")
+                .append("\n\nCác lượt hội thoại mới:\n");
+        for (Message message : batch) {
+            transcript.append("AI".equalsIgnoreCase(message.getSender()) ? "Trợ lý: " : "Người dùng: ")
+                    .append(message.getContent())
+                    .append('\n');
+        }
+
+        List<MessageDto> prompt = new ArrayList<>();
+        prompt.add(new MessageDto(null, null, "SYSTEM", SUMMARY_INSTRUCTION, null));
+        prompt.add(new MessageDto(null, null, "USER", transcript.toString(), null));
+        return prompt;
+    }
+}
@@ -0,0 +1,43 @@
+package com.mindcare.backend.service.ai;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Chính sách giữ model "nóng" trong Ollama để tái sử dụng KV cache giữa các lượt.
+ *
+ * - keep_alive được gửi kèm mọi request nên model không bị unload giữa hai lượt của người dùng.
+ * - options được cố định cho mọi request: Ollama reload model khi num_ctx thay đổi,
+ *   và num_keep giữ lại phần system prompt khi context bị dịch chuyển.
+ */
+@Component
+public class ModelResidencyPolicy {
+
+    private final String keepAlive;
+    private final Map<String, Object> options;
+
+    @Autowired
+    public ModelResidencyPolicy(@Value("${ai.ollama.keep-alive:30m}") String keepAlive,
+                                @Value("${ai.ollama.num-ctx:4096}") int numCtx,
+                                @Value("${gemma.system.prompt}") String systemPrompt) {
+        this.keepAlive = keepAlive;
+        Map<String, Object> pinnedOptions = new LinkedHashMap<>();
+        pinnedOptions.put("num_ctx", numCtx);
+        pinnedOptions.put("num_keep", ConversationContextBuilder.estimateTokens(systemPrompt));
+        this.options = Collections.unmodifiableMap(pinnedOptions);
+    }
+
+    public String keepAlive() {
+        return keepAlive;
+    }
+
+    // Luôn trả về cùng một bộ options để không làm Ollama phải nạp lại model
+    public Map<String, Object> options() {
+        return options;
+    }
+}
@@ -0,0 +1,263 @@
+package com.mindcare.backend.service.ai;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Nhóm các node Ollama ({@code ollama.api.baseurls}, phân tách bằng dấu phẩy; mặc định là {@code ollama.api.baseurl}).
+ *
+ * - Mỗi request được gửi tới node có ít request đang xử lý nhất (least outstanding requests).
+ * - Health check chủ động: định kỳ gọi GET /api/tags; node lỗi bị loại tạm thời trong {@code ai.ollama.eject-duration}.
+ *   Lỗi kết nối khi gửi request thật cũng làm node bị loại.
+ * - Conversation affinity (tùy chọn): cùng một cuộc hội thoại ưu tiên quay lại cùng một node (rendezvous hashing)
+ *   để tận dụng prompt cache, trừ khi node đó đang tải nhiều hơn hẳn các node khác.
+ * - Nếu Reactor Context của lời gọi có {@link #TRIED_NODES} (do lớp retry/hedge đặt vào), các node đã thử
+ *   sẽ được tránh khi còn node khác để chọn.
+ */
+@Component
+public class OllamaNodePool {
+
+    private static final Logger logger = LoggerFactory.getLogger(OllamaNodePool.class);
+
+    /** Khóa Reactor Context chứa tập (Set&lt;String&gt;, thread-safe) base URL các node đã được thử cho cùng một lời gọi. */
+    public static final String TRIED_NODES = OllamaNodePool.class.getName() + ".TRIED_NODES";
+
+    private final List<Node> nodes;
+    private final Duration healthCheckTimeout;
+    private final Duration ejectDuration;
+    private final boolean affinityEnabled;
+    private final int affinityMaxImbalance;
+
+    @Autowired
+    public OllamaNodePool(WebClient.Builder webClientBuilder,
+                          @Value("${ollama.api.baseurls:${ollama.api.baseurl:http://localhost:11434}}") String baseUrls,
+                          @Value("${ai.ollama.health-check-timeout:2s}") Duration healthCheckTimeout,
+                          @Value("${ai.ollama.eject-duration:30s}") Duration ejectDuration,
+                          @Value("${ai.ollama.affinity.enabled:true}") boolean affinityEnabled,
+                          @Value("${ai.ollama.affinity.max-imbalance:2}") int affinityMaxImbalance,
+                          MeterRegistry meterRegistry) {
+        List<String> urls = Arrays.stream(baseUrls.split(","))
+                .map(String::strip)
+                .filter(url -> !url.isEmpty())
+                .distinct()
+                .toList();
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("ollama.api.baseurls must contain at least one URL");
+        }
+        List<Node> configuredNodes = new ArrayList<>();
+        for (String url : urls) {
+            Node node = new Node(url, webClientBuilder.clone().baseUrl(url).build());
+            configuredNodes.add(node);
+            Gauge.builder("ollama.node.outstanding", node.outstanding, AtomicInteger::get)
+                    .description("Số request đang xử lý trên node Ollama")
+                    .tag("node", url)
+                    .register(meterRegistry);
+            Gauge.builder("ollama.node.available", node, n -> n.isAvailable() ? 1 : 0)
+                    .description("Node Ollama có đang nhận request hay không (1/0)")
+                    .tag("node", url)
+                    .register(meterRegistry);
+        }
+        this.nodes = Collections.unmodifiableList(configuredNodes);
+        this.healthCheckTimeout = healthCheckTimeout;
+        this.ejectDuration = ejectDuration;
+        this.affinityEnabled = affinityEnabled;
+        this.affinityMaxImbalance = affinityMaxImbalance;
+        logger.info("Ollama node pool initialized with {} node(s): {} (affinity: {})", nodes.size(), urls, affinityEnabled);
+    }
+
+    /**
+     * Gửi một request (không stream) tới node được chọn; số request đang xử lý của node được giữ
+     * cho đến khi Mono kết thúc.
+     */
+    public <T> Mono<T> execute(String conversationId, Function<WebClient, Mono<T>> request) {
+        return Mono.deferContextual(context -> {
+            Node node = select(conversationId, triedNodes(context));
+            node.outstanding.incrementAndGet();
+            return request.apply(node.client)
+                    .doOnError(e -> onRequestError(node, e))
+                    .doFinally(signal -> node.outstanding.decrementAndGet());
+        });
+    }
+
+    /**
+     * Như {@link #execute} nhưng cho response dạng stream.
+     */
+    public <T> Flux<T> executeStream(String conversationId, Function<WebClient, Flux<T>> request) {
+        return Flux.deferContextual(context -> {
+            Node node = select(conversationId, triedNodes(context));
+            node.outstanding.incrementAndGet();
+            return request.apply(node.client)
+                    .doOnError(e -> onRequestError(node, e))
+                    .doFinally(signal -> node.outstanding.decrementAndGet());
+        });
+    }
+
+    /**
+     * Gửi cùng một request tới tất cả các node (ví dụ: nạp sẵn model khi khởi động).
+     */
+    public <T> Flux<T> broadcast(Function<WebClient, Mono<T>> request) {
+        return Flux.fromIterable(nodes).flatMap(node -> request.apply(node.client)
+                .doOnError(e -> logger.warn("Broadcast request to Ollama node {} failed: {}", node.baseUrl, e.getMessage()))
+                .onErrorResume(e -> Mono.empty()));
+    }
+
+    public List<String> baseUrls() {
+        return nodes.stream().map(node -> node.baseUrl).toList();
+    }
+
+    public List<String> availableBaseUrls() {
+        return nodes.stream().filter(Node::isAvailable).map(node -> node.baseUrl).toList();
+    }
+
+    // Health check chủ động: node trả lời /api/tags thành công được đưa trở lại nhóm ngay
+    @Scheduled(fixedDelayString = "${ai.ollama.health-check-interval-ms:10000}")
+    public void probeNodes() {
+        Flux.fromIterable(nodes)
+                .flatMap(node -> node.client.get()
+                        .uri("/api/tags")
+                        .retrieve()
+                        .toBodilessEntity()
+                        .timeout(healthCheckTimeout)
+                        .doOnSuccess(response -> markHealthy(node))
+                        .onErrorResume(e -> {
+                            markFailed(node, "health check failed: " + e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then()
+                .block(healthCheckTimeout.plusSeconds(1));
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    // Số request đang xử lý của một node (dùng trong test: bộ đếm giảm trong doFinally, sau khi subscriber đã nhận kết quả)
+    int outstandingRequests(String baseUrl) {
+        return nodes.stream()
+                .filter(node -> node.baseUrl.equals(baseUrl))
+                .mapToInt(node -> node.outstanding.get())
+                .findFirst()
+                .orElseThrow();
+    }
+
+    Node select(String conversationId) {
+        return select(conversationId, null);
+    }
+
+    // Chọn node: ưu tiên node theo affinity nếu không bị quá tải, còn lại là node ít request nhất.
+    // Node được chọn được ghi vào triedNodes (nếu có) để lần thử sau của cùng lời gọi tránh nó.
+    Node select(String conversationId, Set<String> triedNodes) {
+        List<Node> candidates = nodes.stream().filter(Node::isAvailable).toList();
+        if (candidates.isEmpty()) {
+            // Không còn node nào khỏe: vẫn thử tất cả thay vì từ chối, lỗi thật sẽ được báo về từ request
+            logger.warn("No healthy Ollama node available, routing to all {} configured node(s)", nodes.size());
+            candidates = nodes;
+        }
+        if (triedNodes != null && !triedNodes.isEmpty()) {
+            List<Node> untried = candidates.stream().filter(node -> !triedNodes.contains(node.baseUrl)).toList();
+            if (!untried.isEmpty()) {
+                candidates = untried;
+            }
+        }
+        Node selected = selectAmong(candidates, conversationId);
+        if (triedNodes != null) {
+            triedNodes.add(selected.baseUrl);
+        }
+        return selected;
+    }
+
+    private Node selectAmong(List<Node> candidates, String conversationId) {
+        Node leastLoaded = candidates.stream()
+                .min(Comparator.comparingInt(node -> node.outstanding.get()))
+                .orElseThrow();
+        if (!affinityEnabled || conversationId == null || candidates.size() == 1) {
+            return leastLoaded;
+        }
+        Node preferred = candidates.stream()
+                .max(Comparator.comparingLong(node -> rendezvousScore(conversationId, node.baseUrl)))
+                .orElseThrow();
+        if (preferred.outstanding.get() - leastLoaded.outstanding.get() > affinityMaxImbalance) {
+            return leastLoaded;
+        }
+        return preferred;
+    }
+
+    private static Set<String> triedNodes(ContextView context) {
+        return context.<Set<String>>getOrEmpty(TRIED_NODES).orElse(null);
+    }
+
+    private void onRequestError(Node node, Throwable e) {
+        // Chỉ lỗi kết nối mới cho thấy node có vấn đề; lỗi HTTP hay timeout có thể do chính request
+        if (e instanceof WebClientRequestException) {
+            markFailed(node, "request failed: " + e.getMessage());
+        }
+    }
+
+    private void markHealthy(Node node) {
+        if (!node.isAvailable()) {
+            logger.info("Ollama node {} is healthy again, returning it to the pool", node.baseUrl);
+        }
+        node.ejectedUntilNanos = 0;
+    }
+
+    private void markFailed(Node node, String reason) {
+        if (node.isAvailable()) {
+            logger.warn("Ejecting Ollama node {} for {}: {}", node.baseUrl, ejectDuration, reason);
+        }
+        node.ejectedUntilNanos = System.nanoTime() + ejectDuration.toNanos();
+    }
+
+    private static long rendezvousScore(String key, String nodeId) {
+        long hash = 1125899906842597L;
+        for (char c : (key + '|' + nodeId).toCharArray()) {
+            hash = 31 * hash + c;
+        }
+        // Trộn bit (fmix64 của MurmurHash3) để điểm phân bố đều
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+
+    static final class Node {
+        private final String baseUrl;
+        private final WebClient client;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile long ejectedUntilNanos; // 0 = đang hoạt động
+
+        private Node(String baseUrl, WebClient client) {
+            this.baseUrl = baseUrl;
+            this.client = client;
+        }
+
+        boolean isAvailable() {
+            long until = ejectedUntilNanos;
+            return until == 0 || System.nanoTime() - until >= 0;
+        }
+
+        String baseUrl() {
+            return baseUrl;
+        }
+    }
+}
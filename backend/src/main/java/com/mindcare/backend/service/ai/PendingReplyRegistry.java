@@ -0,0 +1,68 @@
+package com.mindcare.backend.service.ai;
+
+import com.mindcare.backend.dto.conversation.AiReplyStatusDto;
+import com.mindcare.backend.dto.conversation.MessageDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lưu trạng thái (trong bộ nhớ) của các câu trả lời AI đang được sinh ở chế độ bất đồng bộ,
+ * để client có thể poll theo ID tin nhắn của người dùng.
+ * Các mục đã hoàn thành được giữ lại trong một khoảng TTL rồi bị dọn đi.
+ */
+@Component
+public class PendingReplyRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(PendingReplyRegistry.class);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Duration retention;
+
+    public PendingReplyRegistry(@Value("${ai.reply.status-retention:10m}") Duration retention) {
+        this.retention = retention;
+    }
+
+    public void markPending(String userMessageId) {
+        entries.put(userMessageId, new Entry(AiReplyStatusDto.PENDING, null, null, Instant.now()));
+    }
+
+    public void markCompleted(String userMessageId, MessageDto reply) {
+        entries.put(userMessageId, new Entry(AiReplyStatusDto.COMPLETED, reply, null, Instant.now()));
+    }
+
+    public void markFailed(String userMessageId, String error) {
+        entries.put(userMessageId, new Entry(AiReplyStatusDto.FAILED, null, error, Instant.now()));
+    }
+
+    public Optional<AiReplyStatusDto> find(String userMessageId) {
+        Entry entry = entries.get(userMessageId);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new AiReplyStatusDto(userMessageId, entry.status(), entry.reply(), entry.error()));
+    }
+
+    // Dọn các mục đã quá hạn (kể cả PENDING bị treo, vì request tới Ollama đã có timeout riêng)
+    @Scheduled(fixedDelayString = "${ai.reply.status-cleanup-interval:60000}")
+    public void evictExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.updatedAt().isBefore(cutoff));
+        int removed = before - entries.size();
+        if (removed > 0) {
+            logger.debug("Evicted {} expired AI reply status entries", removed);
+        }
+    }
+
+    private record Entry(String status, MessageDto reply, String error, Instant updatedAt) {
+    }
+}
@@ -1,10 +1,12 @@
 package com.mindcare.backend.service.impl;
 
+import com.mindcare.backend.dto.admin.AdminUserPageDto;
 import com.mindcare.backend.dto.admin.AdminUserUpdateRequestDto;
 import com.mindcare.backend.dto.admin.AdminUserViewDto;
+import com.mindcare.backend.dto.admin.UserDeletionJobDto;
 import com.mindcare.backend.dto.conversation.ConversationDto;
-import com.mindcare.backend.dto.emotion.DailyEmotionLogDto;
 import com.mindcare.backend.dto.conversation.MessageDto;
+import com.mindcare.backend.dto.conversation.MessagePageDto;
 import com.mindcare.backend.dto.emotion.EmotionStatsResponseDto;
 import com.mindcare.backend.enums.ERole;
 import com.mindcare.backend.exception.BadRequestException;
@@ -12,11 +14,20 @@ import com.mindcare.backend.exception.ResourceNotFoundException;
 import com.mindcare.backend.exception.UserAlreadyExistsException;
 import com.mindcare.backend.model.*;
 import com.mindcare.backend.repository.*;
+import com.mindcare.backend.security.jwt.TokenVersionCache;
+import com.mindcare.backend.security.services.RoleRegistry;
+import com.mindcare.backend.security.services.UserCache;
 import com.mindcare.backend.service.interfaces.AdminService;
 import com.mindcare.backend.service.interfaces.DailyEmotionLogService;
+import com.mindcare.backend.service.interfaces.UserDeletionService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -26,7 +37,6 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -36,28 +46,43 @@ public class AdminServiceImpl implements AdminService {
     private static final Logger logger = LoggerFactory.getLogger(AdminServiceImpl.class);
 
     private final UserRepository userRepository;
-    private final RoleRepository roleRepository;
+    private final RoleRegistry roleRegistry;
+    private final TokenVersionCache tokenVersionCache;
+    private final UserCache userCache;
     private final PasswordEncoder passwordEncoder;
     private final ConversationRepository conversationRepository;
-    private final MessageRepository messageRepository;
-    private final DailyEmotionLogRepository dailyEmotionLogRepository;
+    private final MessageStore messageStore;
     private final DailyEmotionLogService dailyEmotionLogService;
+    private final UserDeletionService userDeletionService;
+    private final MessagePageLoader messagePageLoader;
+    private final int defaultUserPageSize;
+    private final int maxUserPageSize;
 
     @Autowired
     public AdminServiceImpl(UserRepository userRepository,
-                            RoleRepository roleRepository,
+                            RoleRegistry roleRegistry,
                             PasswordEncoder passwordEncoder,
                             ConversationRepository conversationRepository,
-                            MessageRepository messageRepository,
-                            DailyEmotionLogRepository dailyEmotionLogRepository,
-                            DailyEmotionLogService dailyEmotionLogService) {
+                            MessageStore messageStore,
+                            DailyEmotionLogService dailyEmotionLogService,
+                            UserDeletionService userDeletionService,
+                            MessagePageLoader messagePageLoader,
+                            TokenVersionCache tokenVersionCache,
+                            UserCache userCache,
+                            @Value("${app.admin.users.page.default-size:20}") int defaultUserPageSize,
+                            @Value("${app.admin.users.page.max-size:100}") int maxUserPageSize) {
         this.userRepository = userRepository;
-        this.roleRepository = roleRepository;
+        this.roleRegistry = roleRegistry;
         this.passwordEncoder = passwordEncoder;
         this.conversationRepository = conversationRepository;
-        this.messageRepository = messageRepository;
-        this.dailyEmotionLogRepository = dailyEmotionLogRepository;
+        this.messageStore = messageStore;
         this.dailyEmotionLogService = dailyEmotionLogService;
+        this.userDeletionService = userDeletionService;
+        this.messagePageLoader = messagePageLoader;
+        this.tokenVersionCache = tokenVersionCache;
+        this.userCache = userCache;
+        this.defaultUserPageSize = defaultUserPageSize;
+        this.maxUserPageSize = maxUserPageSize;
     }
     @Override
     @Transactional(readOnly = true)
@@ -72,7 +97,7 @@ public class AdminServiceImpl implements AdminService {
                 });
 
         // 2. Lấy tất cả tin nhắn của cuộc hội thoại đó (admin không bị giới hạn bởi userId sở hữu)
-        List<Message> messages = messageRepository.findByConversationIdOrderByTimestampAsc(conversationId);
+        List<Message> messages = messageStore.findAll(conversationId);
         logger.info("Found {} messages for ConversationID: {}", messages.size(), conversationId);
 
         return messages.stream()
@@ -80,9 +105,33 @@ public class AdminServiceImpl implements AdminService {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public MessagePageDto getMessagesForConversationPage(String conversationId, String before, String after, Integer limit) {
+        logger.info("Admin request: Get message page for ConversationID: {} (before: {}, after: {}, limit: {})",
+                conversationId, before, after, limit);
+        conversationRepository.findById(conversationId)
+                .orElseThrow(() -> {
+                    logger.warn("Admin request failed: Conversation with ID {} not found.", conversationId);
+                    return new ResourceNotFoundException("Không tìm thấy cuộc hội thoại với ID: " + conversationId);
+                });
+        return messagePageLoader.load(conversationId, before, after, limit, this::mapMessageToDtoInternal);
+    }
+
     // Helper method để kiểm tra User tồn tại (có thể dùng chung nếu bạn có lớp tiện ích)
     private User findUserByIdOrThrow(String userId, String operation) {
+        return userCache.findById(userId)
+                .orElseThrow(() -> {
+                    logger.warn("{} failed: User with ID {} not found.", operation, userId);
+                    return new ResourceNotFoundException("Không tìm thấy người dùng với ID: " + userId);
+                });
+    }
+
+    // Các thao tác ghi đọc User trực tiếp từ DB: bản trong UserCache có thể cũ (instance khác vừa đổi mật khẩu,
+    // token_version hoặc đánh dấu deleted), lưu lại bản cũ sẽ ghi đè các thay đổi đó
+    private User findUserForUpdateOrThrow(String userId, String operation) {
         return userRepository.findById(userId)
+                .filter(user -> !user.isDeleted())
                 .orElseThrow(() -> {
                     logger.warn("{} failed: User with ID {} not found.", operation, userId);
                     return new ResourceNotFoundException("Không tìm thấy người dùng với ID: " + userId);
@@ -93,8 +142,64 @@ public class AdminServiceImpl implements AdminService {
     @Transactional(readOnly = true)
     public List<AdminUserViewDto> getAllUsers() {
         logger.info("Admin request: Get all users");
-        return userRepository.findAll().stream()
-                .map(this::mapUserToAdminUserViewDto)
+        return mapUserSummariesToDtos(userRepository.findSummaries(null, Pageable.unpaged()).getContent());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public AdminUserPageDto getUsersPage(String usernamePrefix, Integer page, Integer size, String sort) {
+        logger.info("Admin request: Get users page (q: {}, page: {}, size: {}, sort: {})", usernamePrefix, page, size, sort);
+        if (page != null && page < 0) {
+            throw new BadRequestException("Lỗi: Tham số 'page' không được âm.");
+        }
+        if (size != null && size < 1) {
+            throw new BadRequestException("Lỗi: Tham số 'size' phải lớn hơn 0.");
+        }
+        int pageSize = size == null ? defaultUserPageSize : Math.min(size, maxUserPageSize);
+        Pageable pageable = PageRequest.of(page == null ? 0 : page, pageSize, parseUserSort(sort));
+
+        Page<UserSummary> users = userRepository.findSummaries(
+                StringUtils.hasText(usernamePrefix) ? usernamePrefix.trim() : null, pageable);
+        return new AdminUserPageDto(
+                mapUserSummariesToDtos(users.getContent()),
+                users.getNumber(),
+                users.getSize(),
+                users.getTotalElements(),
+                users.getTotalPages(),
+                users.hasNext()
+        );
+    }
+
+    // "username" hoặc "createdAt", kèm ",asc"/",desc" (mặc định: người dùng mới tạo lên đầu)
+    private Sort parseUserSort(String sort) {
+        if (!StringUtils.hasText(sort)) {
+            return Sort.by(Sort.Direction.DESC, "created_at").and(Sort.by(Sort.Direction.DESC, "_id"));
+        }
+        String[] parts = sort.split(",", 2);
+        Sort.Direction direction;
+        try {
+            direction = parts.length > 1 ? Sort.Direction.fromString(parts[1].trim()) : Sort.Direction.ASC;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Lỗi: Chiều sắp xếp '" + parts[1].trim() + "' không hợp lệ (asc hoặc desc).");
+        }
+        return switch (parts[0].trim()) {
+            case "username" -> Sort.by(direction, "username");
+            // Thêm _id cùng chiều để thứ tự ổn định giữa các trang và khớp index created_at_id_idx
+            case "createdAt" -> Sort.by(direction, "created_at").and(Sort.by(direction, "_id"));
+            default -> throw new BadRequestException("Lỗi: Không hỗ trợ sắp xếp theo '" + parts[0].trim() + "' (username hoặc createdAt).");
+        };
+    }
+
+    // Tên vai trò nằm sẵn trong document User nên không cần truy vấn thêm collection "roles"
+    private List<AdminUserViewDto> mapUserSummariesToDtos(List<UserSummary> users) {
+        return users.stream()
+                .map(user -> new AdminUserViewDto(
+                        user.id(),
+                        user.username(),
+                        user.avatarUrl(),
+                        Set.copyOf(user.roleNames()),
+                        user.createdAt(),
+                        user.updatedAt()))
                 .collect(Collectors.toList());
     }
 
@@ -110,9 +215,11 @@ public class AdminServiceImpl implements AdminService {
     @Transactional
     public AdminUserViewDto updateUserByAdmin(String userId, AdminUserUpdateRequestDto updateRequest) {
         logger.info("Admin request: Update user by ID: {}", userId);
-        User user = findUserByIdOrThrow(userId, "Update user by admin");
+        User user = findUserForUpdateOrThrow(userId, "Update user by admin");
 
         boolean updated = false;
+        String previousUsername = user.getUsername();
+        boolean revokeTokens = false; // Username, mật khẩu hoặc vai trò thay đổi: các JWT đã cấp không còn đúng
 
         if (StringUtils.hasText(updateRequest.getUsername()) && !user.getUsername().equals(updateRequest.getUsername())) {
             if (userRepository.existsByUsername(updateRequest.getUsername())) {
@@ -122,12 +229,14 @@ public class AdminServiceImpl implements AdminService {
             }
             user.setUsername(updateRequest.getUsername());
             updated = true;
+            revokeTokens = true;
             logger.info("Admin updated username for UserID: {} to: {}", userId, updateRequest.getUsername());
         }
 
         if (StringUtils.hasText(updateRequest.getPassword())) {
             user.setPassword(passwordEncoder.encode(updateRequest.getPassword()));
             updated = true;
+            revokeTokens = true;
             logger.info("Admin reset password for UserID: {}", userId);
         }
 
@@ -138,33 +247,32 @@ public class AdminServiceImpl implements AdminService {
         }
 
         if (updateRequest.getRoles() != null) { // Không kiểm tra isEmpty() để cho phép xóa hết roles nếu gửi set rỗng
-            Set<Role> newRoles = new HashSet<>();
-            if (!updateRequest.getRoles().isEmpty()) {
-                for (String roleNameStr : updateRequest.getRoles()) {
-                    try {
-                        ERole eRole = ERole.valueOf(roleNameStr.trim().toUpperCase());
-                        Role role = roleRepository.findByName(eRole)
-                                // SỬ DỤNG BadRequestException cho role không hợp lệ/không tồn tại
-                                .orElseThrow(() -> {
-                                    logger.warn("Admin user update failed for UserID: {}. Role '{}' not found.", userId, roleNameStr);
-                                    return new BadRequestException("Lỗi: Vai trò '" + roleNameStr + "' không hợp lệ hoặc không tồn tại.");
-                                });
-                        newRoles.add(role);
-                    } catch (IllegalArgumentException e) {
-                        logger.warn("Admin user update failed for UserID: {}. Role name '{}' is not a valid ERole.", userId, roleNameStr);
-                        // SỬ DỤNG BadRequestException cho tên role không đúng định dạng Enum
-                        throw new BadRequestException("Lỗi: Tên vai trò '" + roleNameStr + "' không được hỗ trợ hoặc không đúng định dạng.");
-                    }
-                }
+            Set<ERole> newRoles = new HashSet<>();
+            for (String roleNameStr : updateRequest.getRoles()) {
+                // Kiểm tra trong RoleRegistry (bộ nhớ), không truy vấn collection "roles"
+                ERole role = roleRegistry.resolve(roleNameStr)
+                        .orElseThrow(() -> {
+                            logger.warn("Admin user update failed for UserID: {}. Role name '{}' is not supported.", userId, roleNameStr);
+                            return new BadRequestException("Lỗi: Tên vai trò '" + roleNameStr + "' không được hỗ trợ hoặc không đúng định dạng.");
+                        });
+                newRoles.add(role);
             }
+            revokeTokens |= !newRoles.equals(user.getRoles());
             user.setRoles(newRoles); // Gán set rỗng nếu updateRequest.getRoles() rỗng và không null
             updated = true;
             logger.info("Admin updated roles for UserID: {} to: {}", userId, updateRequest.getRoles());
         }
 
         if (updated) {
+            if (revokeTokens) {
+                user.setTokenVersion(user.getTokenVersion() + 1);
+            }
             user.setUpdatedAt(LocalDateTime.now());
             User savedUser = userRepository.save(user);
+            userCache.evict(userId, previousUsername, savedUser.getUsername());
+            if (revokeTokens) {
+                tokenVersionCache.update(userId, savedUser.getTokenVersion());
+            }
             logger.info("User profile updated by admin for UserID: {}", userId);
             return mapUserToAdminUserViewDto(savedUser);
         }
@@ -173,29 +281,15 @@ public class AdminServiceImpl implements AdminService {
     }
 
     @Override
-    @Transactional
-    public void deleteUserAndAssociatedData(String userId) {
+    public UserDeletionJobDto deleteUserAndAssociatedData(String userId) {
         logger.warn("Admin request: Delete user and associated data for UserID: {}", userId);
-        User user = findUserByIdOrThrow(userId, "Delete user and associated data");
-
-        logger.info("Deleting daily emotion logs for UserID: {}", userId);
-        dailyEmotionLogRepository.deleteAllByUserId(userId);
-
-        List<Conversation> conversations = conversationRepository.findByUserIdOrderByUpdatedAtDesc(userId);
-        if (!conversations.isEmpty()) {
-            logger.info("Found {} conversations for UserID: {}. Deleting messages and conversations...", conversations.size(), userId);
-            for (Conversation conversation : conversations) {
-                logger.debug("Deleting messages for ConversationID: {}", conversation.getId());
-                messageRepository.deleteAllByConversationId(conversation.getId());
-            }
-            conversationRepository.deleteAll(conversations); // Xóa hết conversation của user
-            logger.info("Deleted all conversations for UserID: {}", userId);
-        } else {
-            logger.info("No conversations found for UserID: {}", userId);
-        }
+        return userDeletionService.requestDeletion(userId);
+    }
 
-        userRepository.delete(user);
-        logger.info("User with ID: {} and all associated data deleted successfully by admin.", userId);
+    @Override
+    public UserDeletionJobDto getUserDeletionJob(String userId) {
+        logger.info("Admin request: Get deletion job for UserID: {}", userId);
+        return userDeletionService.getDeletionJob(userId);
     }
 
     @Override
@@ -204,7 +298,7 @@ public class AdminServiceImpl implements AdminService {
         findUserByIdOrThrow(targetUserId, "Get user conversations for admin"); // Kiểm tra targetUser tồn tại
         logger.info("Admin request: Get conversations for target UserID: {}", targetUserId);
 
-        List<Conversation> conversations = conversationRepository.findByUserIdOrderByUpdatedAtDesc(targetUserId);
+        List<Conversation> conversations = conversationRepository.findSidebarByUserId(targetUserId);
         return conversations.stream().map(this::mapConversationToDto).collect(Collectors.toList());
     }
 
@@ -214,10 +308,7 @@ public class AdminServiceImpl implements AdminService {
         findUserByIdOrThrow(targetUserId, "Get user emotion stats for admin"); // Kiểm tra targetUser tồn tại
         logger.info("Admin request: Get emotion stats for target UserID: {} from {} to {}", targetUserId, startDate, endDate);
 
-        List<DailyEmotionLogDto> dailyLogs = dailyEmotionLogService.getEmotionLogsForPeriod(targetUserId, startDate, endDate);
-        Map<String, Long> summary = dailyEmotionLogService.getEmotionStatsSummary(targetUserId, startDate, endDate);
-
-        return new EmotionStatsResponseDto(dailyLogs, summary);
+        return dailyEmotionLogService.getEmotionStats(targetUserId, startDate, endDate, true);
     }
 
     @Override
@@ -235,10 +326,9 @@ public class AdminServiceImpl implements AdminService {
         newUser.setAvatarUrl(createRequest.getAvatarUrl());
 
         // Tạo các vai trò (nếu có) và gán cho người dùng
-        Set<Role> roles = new HashSet<>();
+        Set<ERole> roles = new HashSet<>();
         for (String roleNameStr : createRequest.getRoles()) {
-            ERole eRole = ERole.valueOf(roleNameStr.trim().toUpperCase());
-            Role role = roleRepository.findByName(eRole)
+            ERole role = roleRegistry.resolve(roleNameStr)
                     .orElseThrow(() -> new BadRequestException("Lỗi: Vai trò '" + roleNameStr + "' không hợp lệ!"));
             roles.add(role);
         }
@@ -253,7 +343,7 @@ public class AdminServiceImpl implements AdminService {
     private AdminUserViewDto mapUserToAdminUserViewDto(User user) {
         if (user == null) return null;
         Set<String> roleNames = user.getRoles().stream()
-                .map(role -> role.getName().name())
+                .map(ERole::name)
                 .collect(Collectors.toSet());
         return new AdminUserViewDto(
                 user.getId(),
@@ -273,7 +363,10 @@ public class AdminServiceImpl implements AdminService {
                 conversation.getTitle(),
                 conversation.getAiModel(),
                 conversation.getCreatedAt(),
-                conversation.getUpdatedAt()
+                conversation.getUpdatedAt(),
+                conversation.getMessageCount(),
+                conversation.getLastMessagePreview(),
+                conversation.getLastSender()
         );
     }
     private MessageDto mapMessageToDtoInternal(Message message) {
@@ -9,11 +9,11 @@ import com.mindcare.backend.enums.ERole;
 import com.mindcare.backend.exception.BadRequestException;
 import com.mindcare.backend.exception.ResourceNotFoundException;
 import com.mindcare.backend.exception.UserAlreadyExistsException;
-import com.mindcare.backend.model.Role;
 import com.mindcare.backend.model.User;
-import com.mindcare.backend.repository.RoleRepository;
 import com.mindcare.backend.repository.UserRepository;
 import com.mindcare.backend.security.jwt.JwtUtils;
+import com.mindcare.backend.security.jwt.TokenVersionCache;
+import com.mindcare.backend.security.services.UserCache;
 import com.mindcare.backend.security.services.UserDetailsImpl;
 import com.mindcare.backend.service.interfaces.AuthService;
 import org.slf4j.Logger;
@@ -42,21 +42,24 @@ public class AuthServiceImpl implements AuthService {
 
     private final AuthenticationManager authenticationManager;
     private final UserRepository userRepository;
-    private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtils jwtUtils;
+    private final TokenVersionCache tokenVersionCache;
+    private final UserCache userCache;
 
     @Autowired
     public AuthServiceImpl(AuthenticationManager authenticationManager,
                            UserRepository userRepository,
-                           RoleRepository roleRepository,
                            PasswordEncoder passwordEncoder,
-                           JwtUtils jwtUtils) {
+                           JwtUtils jwtUtils,
+                           TokenVersionCache tokenVersionCache,
+                           UserCache userCache) {
         this.authenticationManager = authenticationManager;
         this.userRepository = userRepository;
-        this.roleRepository = roleRepository;
         this.passwordEncoder = passwordEncoder;
         this.jwtUtils = jwtUtils;
+        this.tokenVersionCache = tokenVersionCache;
+        this.userCache = userCache;
     }
 
     @Override
@@ -74,14 +77,8 @@ public class AuthServiceImpl implements AuthService {
                 passwordEncoder.encode(registerRequest.getPassword())
         );
 
-        Set<Role> roles = new HashSet<>();
-        Role userRole = roleRepository.findByName(ERole.ROLE_USER)
-                // SỬ DỤNG ResourceNotFoundException
-                .orElseThrow(() -> {
-                    logger.error("Critical error: Role 'ROLE_USER' is not found in the database. Please initialize roles.");
-                    return new ResourceNotFoundException("Lỗi hệ thống: Vai trò người dùng mặc định không được cấu hình.");
-                });
-        roles.add(userRole);
+        Set<ERole> roles = new HashSet<>();
+        roles.add(ERole.ROLE_USER); // RoleRegistry đảm bảo vai trò mặc định tồn tại khi khởi động
         user.setRoles(roles);
 
         user.setCreatedAt(LocalDateTime.now());
@@ -114,7 +111,7 @@ public class AuthServiceImpl implements AuthService {
                     .map(GrantedAuthority::getAuthority)
                     .collect(Collectors.toList());
             // 6. Lấy thông tin avatarUrl từ User entity (nếu có)
-            User userEntity = userRepository.findById(userDetails.getId())
+            User userEntity = userCache.findById(userDetails.getId())
                     .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy User với ID: " + userDetails.getId() + " sau khi xác thực."));
 
             logger.info("User authenticated successfully: {}", userDetails.getUsername());
@@ -141,15 +138,20 @@ public class AuthServiceImpl implements AuthService {
 
         logger.info("Attempting to reset password for username: {}", username);
 
+        // Đọc trực tiếp từ DB (không qua UserCache) vì User sẽ được lưu lại toàn bộ
         User user = userRepository.findByUsername(username)
+                .filter(existing -> !existing.isDeleted())
                 .orElseThrow(() -> {
                     logger.warn("Forgot password attempt for non-existent username: {}", username);
                     return new ResourceNotFoundException("Lỗi: Tên đăng nhập '" + username + "' không tồn tại.");
                 });
 
         user.setPassword(passwordEncoder.encode(newPassword));
+        user.setTokenVersion(user.getTokenVersion() + 1); // Thu hồi các JWT đã cấp
         user.setUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        userCache.evict(user.getId(), username);
+        tokenVersionCache.update(user.getId(), user.getTokenVersion());
 
         logger.info("Password reset successfully for username: {}", username);
         return new MessageResponse("Mật khẩu đã được đặt lại thành công. Vui lòng đăng nhập lại.");
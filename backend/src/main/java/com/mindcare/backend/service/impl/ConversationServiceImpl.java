@@ -1,14 +1,24 @@
 package com.mindcare.backend.service.impl;
 
+import com.mindcare.backend.dto.conversation.AiReplyStatusDto;
 import com.mindcare.backend.dto.conversation.ConversationDto;
 import com.mindcare.backend.dto.conversation.MessageDto;
+import com.mindcare.backend.dto.conversation.MessagePageDto;
 import com.mindcare.backend.dto.conversation.MessageRequest;
+import com.mindcare.backend.dto.conversation.MessageStreamEventDto;
+import com.mindcare.backend.exception.AiServiceException;
 import com.mindcare.backend.exception.ResourceNotFoundException;
 import com.mindcare.backend.model.Conversation;
 import com.mindcare.backend.model.Message;
 import com.mindcare.backend.repository.ConversationRepository;
-import com.mindcare.backend.repository.MessageRepository;
+import com.mindcare.backend.repository.ConversationSummaryRepository;
+import com.mindcare.backend.repository.MessageStore;
 import com.mindcare.backend.repository.UserRepository;
+import com.mindcare.backend.service.ai.AiAdmissionGate;
+import com.mindcare.backend.service.ai.AiResponseCache;
+import com.mindcare.backend.service.ai.ConversationContextBuilder;
+import com.mindcare.backend.service.ai.ConversationSummarizer;
+import com.mindcare.backend.service.ai.PendingReplyRegistry;
 import com.mindcare.backend.service.interfaces.AiChatService;
 import com.mindcare.backend.service.interfaces.ConversationService;
 import org.slf4j.Logger;
@@ -17,7 +27,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -29,22 +44,49 @@ public class ConversationServiceImpl implements ConversationService {
     private static final Logger logger = LoggerFactory.getLogger(ConversationServiceImpl.class);
 
     private final ConversationRepository conversationRepository;
-    private final MessageRepository messageRepository;
+    private final MessageStore messageStore;      // Nơi lưu tin nhắn (collection hoặc bucket, xem app.messages.storage)
     private final UserRepository userRepository; // Để kiểm tra User nếu cần
     private final AiChatService aiChatService;   // Service để tương tác với AI
+    private final ConversationContextBuilder conversationContextBuilder; // Dựng ngữ cảnh theo ngân sách token
+    private final ConversationSummarizer conversationSummarizer; // Tóm tắt nền các lượt cũ
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final PendingReplyRegistry pendingReplyRegistry; // Trạng thái các câu trả lời AI bất đồng bộ
+    private final Scheduler aiReplyScheduler;    // Thread pool có giới hạn cho các bước lưu sau khi AI trả lời
+    private final AiAdmissionGate aiAdmissionGate; // Giới hạn số lời gọi đồng thời tới Ollama, xếp hàng công bằng theo user
+    private final AiResponseCache aiResponseCache; // Cache câu trả lời cho các ngữ cảnh ngắn lặp lại
+    private final MessagePageLoader messagePageLoader; // Đọc lịch sử tin nhắn theo trang (cursor)
 
     @Value("${ollama.model.name:gemma:latest}") // Lấy tên model từ application.properties
     private String defaultAiModelName;
 
+    @Value("${ai.reply.status-retention:10m}")
+    private Duration aiReplyStatusRetention;
+
     @Autowired
     public ConversationServiceImpl(ConversationRepository conversationRepository,
-                                   MessageRepository messageRepository,
+                                   MessageStore messageStore,
                                    UserRepository userRepository,
-                                   AiChatService aiChatService) {
+                                   AiChatService aiChatService,
+                                   ConversationContextBuilder conversationContextBuilder,
+                                   ConversationSummarizer conversationSummarizer,
+                                   ConversationSummaryRepository conversationSummaryRepository,
+                                   PendingReplyRegistry pendingReplyRegistry,
+                                   Scheduler aiReplyScheduler,
+                                   AiAdmissionGate aiAdmissionGate,
+                                   AiResponseCache aiResponseCache,
+                                   MessagePageLoader messagePageLoader) {
         this.conversationRepository = conversationRepository;
-        this.messageRepository = messageRepository;
+        this.messageStore = messageStore;
         this.userRepository = userRepository;
         this.aiChatService = aiChatService;
+        this.conversationContextBuilder = conversationContextBuilder;
+        this.conversationSummarizer = conversationSummarizer;
+        this.conversationSummaryRepository = conversationSummaryRepository;
+        this.pendingReplyRegistry = pendingReplyRegistry;
+        this.aiReplyScheduler = aiReplyScheduler;
+        this.aiAdmissionGate = aiAdmissionGate;
+        this.aiResponseCache = aiResponseCache;
+        this.messagePageLoader = messagePageLoader;
     }
 
     @Override
@@ -74,7 +116,7 @@ public class ConversationServiceImpl implements ConversationService {
     @Transactional(readOnly = true)
     public List<ConversationDto> getUserConversations(String userId) {
         logger.debug("Fetching conversations for UserID: {}", userId);
-        List<Conversation> conversations = conversationRepository.findByUserIdOrderByUpdatedAtDesc(userId);
+        List<Conversation> conversations = conversationRepository.findSidebarByUserId(userId);
         return conversations.stream()
                 .map(this::mapToConversationDto)
                 .collect(Collectors.toList());
@@ -93,7 +135,7 @@ public class ConversationServiceImpl implements ConversationService {
     public MessageDto saveUserMessage(String userId, String conversationId, MessageRequest messageRequest) {
         logger.info("SAVE_USER_MESSAGE: Attempting to find conversation. Passed ConversationID='{}', Passed CurrentUserID='{}'",
                 conversationId, userId);
-        Conversation conversation = conversationRepository.findByIdAndUserId(conversationId, userId)
+        conversationRepository.findByIdAndUserId(conversationId, userId)
                 .orElseThrow(() -> {
                     logger.warn("Attempt to save message to non-existent or unauthorized conversation. UserID: {}, ConvID: {}", userId, conversationId);
                     return new ResourceNotFoundException(
@@ -101,57 +143,180 @@ public class ConversationServiceImpl implements ConversationService {
                     );
                 });
 
-        // 1. Lưu tin nhắn của người dùng
-        Message userMessageEntity = new Message(
+        // 1. Lưu tin nhắn của người dùng ngay (trước khi gọi AI): nó xuất hiện trong lịch sử, phân trang và các tab khác
+        //    trong lúc chờ AI, và không bị mất nếu AI lỗi hoặc instance dừng giữa chừng
+        Message savedUserMessage = messageStore.append(new Message(
                 conversationId,
                 "USER",
                 messageRequest.getContent()
-        );
-        Message savedUserMessage = messageRepository.save(userMessageEntity);
+        ));
         logger.info("User message saved. MsgID: {}, ConvID: {}", savedUserMessage.getId(), conversationId);
 
-        // Cập nhật thời gian updatedAt của Conversation sau tin nhắn của user
-        conversation.setUpdatedAt(LocalDateTime.now());
-        // conversationRepository.save(conversation); // Sẽ save ở cuối nếu có tin nhắn AI
-
-        // 2. Chuẩn bị lịch sử hội thoại để gửi cho AI
-        List<Message> currentMessages = messageRepository.findByConversationIdOrderByTimestampAsc(conversationId);
-        List<MessageDto> conversationHistoryForAI = currentMessages.stream()
-                .map(this::mapToMessageDto)
-                .collect(Collectors.toList());
+        // 2. Chuẩn bị lịch sử hội thoại để gửi cho AI (chỉ các lượt gần nhất vừa với ngân sách token)
+        List<MessageDto> conversationHistoryForAI = conversationContextBuilder.build(conversationId).history();
 
         // 3. Gọi AiChatService để lấy phản hồi từ AI
         String aiResponseContent = null;
         try {
             logger.info("Requesting AI response for ConvID: {}. Current user message: '{}'", conversationId, savedUserMessage.getContent());
-            aiResponseContent = aiChatService.getAiResponse(conversationId, conversationHistoryForAI, savedUserMessage.getContent());
+            aiResponseContent = requestAiReply(userId, conversationId, conversationHistoryForAI, savedUserMessage.getContent())
+                    .block();
         } catch (Exception e) {
             logger.error("Error getting AI response for ConvID: {}. Error: {}", conversationId, e.getMessage(), e);
-            // Hiện tại, nếu AI lỗi, sẽ không có tin nhắn AI nào được lưu.
-            // Cập nhật conversation dù AI có lỗi hay không
-            conversationRepository.save(conversation);
+            // Nếu AI lỗi, không có tin nhắn AI nào được lưu (tin nhắn user đã được lưu ở bước 1).
         }
 
-        // 4. Lưu tin nhắn phản hồi từ AI (nếu có)
-        if (aiResponseContent != null && !aiResponseContent.isBlank()) {
-            Message aiMessageEntity = new Message(
-                    conversationId,
-                    "AI",
-                    aiResponseContent
-            );
-            messageRepository.save(aiMessageEntity);
-            logger.info("AI message saved for ConvID: {}", conversationId);
-
-            // Cập nhật lại thời gian updatedAt của Conversation sau tin nhắn của AI
-            conversation.setUpdatedAt(LocalDateTime.now());
-            conversationRepository.save(conversation); // Save conversation sau khi có cả tin nhắn AI
-        } else {
+        // 4. Lưu phản hồi từ AI (nếu có) và ghi nhận lượt chat vào Conversation bằng một lệnh $set/$inc
+        persistAiReply(savedUserMessage, aiResponseContent);
+
+        return mapToMessageDto(savedUserMessage);
+    }
+
+    @Override
+    public Flux<MessageStreamEventDto> streamUserMessage(String userId, String conversationId, MessageRequest messageRequest) {
+        // Các bước kiểm tra và lưu tin nhắn user chạy ngay (đồng bộ) để lỗi 404 được trả về trước khi mở stream
+        findConversationOrThrow(userId, conversationId, "Stream message");
+
+        Message savedUserMessage = messageStore.append(new Message(
+                conversationId,
+                "USER",
+                messageRequest.getContent()
+        ));
+        logger.info("User message saved (stream). MsgID: {}, ConvID: {}", savedUserMessage.getId(), conversationId);
+
+        List<MessageDto> conversationHistoryForAI = conversationContextBuilder.build(conversationId).history();
+
+        return Flux.defer(() -> {
+            // Ghép các token lại để lưu thành một tin nhắn AI hoàn chỉnh khi stream kết thúc
+            StringBuilder assembledResponse = new StringBuilder();
+
+            Flux<MessageStreamEventDto> tokens = aiResponseCache
+                    .getOrStream(conversationHistoryForAI, () -> aiAdmissionGate.submitStream(userId, () -> aiChatService
+                            .streamAiResponse(conversationId, conversationHistoryForAI, savedUserMessage.getContent())))
+                    .doOnNext(assembledResponse::append)
+                    .map(MessageStreamEventDto::token);
+
+            // Lưu vào MongoDB là thao tác blocking nên không chạy trên thread của Netty
+            Mono<MessageStreamEventDto> done = Mono
+                    .fromCallable(() -> completeStreamedReply(savedUserMessage, assembledResponse.toString()))
+                    .subscribeOn(Schedulers.boundedElastic());
+
+            return Flux.concat(Mono.just(MessageStreamEventDto.userMessage(mapToMessageDto(savedUserMessage))), tokens, done)
+                    .doOnCancel(() -> {
+                        logger.warn("Client cancelled AI stream for ConvID: {}. No AI message saved.", conversationId);
+                        // Tin nhắn user đã được lưu: vẫn ghi nhận nó vào Conversation
+                        Schedulers.boundedElastic().schedule(() -> recordNewMessages(conversationId, 1, savedUserMessage));
+                    })
+                    .onErrorResume(e -> {
+                        logger.error("Error streaming AI response for ConvID: {}. Error: {}", conversationId, e.getMessage(), e);
+                        String errorMessage = (e instanceof AiServiceException)
+                                ? e.getMessage()
+                                : "Lỗi: Không thể nhận phản hồi từ AI.";
+                        return Mono.fromRunnable(() -> recordNewMessages(conversationId, 1, savedUserMessage))
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .thenReturn(MessageStreamEventDto.error(errorMessage));
+                    });
+        });
+    }
+
+    // Lấy câu trả lời AI: thử cache trước, nếu không có thì chờ lượt qua admission gate rồi mới gọi model
+    private Mono<String> requestAiReply(String userId, String conversationId, List<MessageDto> history, String userMessage) {
+        return aiResponseCache.getOrCompute(history, () -> aiAdmissionGate.submit(userId,
+                () -> aiChatService.getAiResponseAsync(conversationId, history, userMessage)));
+    }
+
+    // Lưu tin nhắn AI đã được ghép đầy đủ từ stream và cập nhật updatedAt của Conversation
+    private MessageStreamEventDto completeStreamedReply(Message savedUserMessage, String aiResponseContent) {
+        Message savedAiMessage = persistAiReply(savedUserMessage, aiResponseContent);
+        return MessageStreamEventDto.done(mapToMessageDto(savedAiMessage));
+    }
+
+    @Override
+    public MessageDto saveUserMessageAsync(String userId, String conversationId, MessageRequest messageRequest) {
+        findConversationOrThrow(userId, conversationId, "Save message (async)");
+
+        Message savedUserMessage = messageStore.append(new Message(
+                conversationId,
+                "USER",
+                messageRequest.getContent()
+        ));
+        String userMessageId = savedUserMessage.getId();
+        logger.info("User message saved (async). MsgID: {}, ConvID: {}", userMessageId, conversationId);
+
+        List<MessageDto> conversationHistoryForAI = conversationContextBuilder.build(conversationId).history();
+
+        pendingReplyRegistry.markPending(userMessageId);
+
+        // Request tới Ollama là non-blocking; chỉ bước lưu kết quả mới chạy trên aiReplyScheduler
+        requestAiReply(userId, conversationId, conversationHistoryForAI, savedUserMessage.getContent())
+                .publishOn(aiReplyScheduler)
+                .map(aiResponseContent -> Optional.ofNullable(persistAiReply(savedUserMessage, aiResponseContent)))
+                .subscribe(
+                        savedAiMessage -> savedAiMessage.ifPresentOrElse(
+                                aiMessage -> pendingReplyRegistry.markCompleted(userMessageId, mapToMessageDto(aiMessage)),
+                                () -> pendingReplyRegistry.markFailed(userMessageId, "Phản hồi không hợp lệ hoặc rỗng từ dịch vụ AI.")),
+                        e -> {
+                            logger.error("Error getting async AI response for ConvID: {}. Error: {}", conversationId, e.getMessage(), e);
+                            pendingReplyRegistry.markFailed(userMessageId, (e instanceof AiServiceException)
+                                    ? e.getMessage()
+                                    : "Lỗi: Không thể nhận phản hồi từ AI.");
+                            // Cập nhật conversation dù AI có lỗi hay không
+                            aiReplyScheduler.schedule(() -> recordNewMessages(conversationId, 1, savedUserMessage));
+                        });
+
+        return mapToMessageDto(savedUserMessage);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public AiReplyStatusDto getAiReplyStatus(String userId, String conversationId, String userMessageId) {
+        findConversationOrThrow(userId, conversationId, "Get AI reply status");
+        Message userMessage = messageStore.findById(conversationId, userMessageId)
+                .filter(message -> "USER".equals(message.getSender()))
+                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy tin nhắn với ID: " + userMessageId + " trong cuộc hội thoại này."));
+
+        Optional<AiReplyStatusDto> trackedStatus = pendingReplyRegistry.find(userMessageId);
+        if (trackedStatus.isPresent()) {
+            return trackedStatus.get();
+        }
+
+        // Không còn trong bộ nhớ (đã hết hạn hoặc do instance khác xử lý): tra trực tiếp trong DB
+        Optional<Message> nextMessage = messageStore.findFirstAfter(conversationId, userMessage.getTimestamp());
+        if (nextMessage.isPresent() && "AI".equals(nextMessage.get().getSender())) {
+            return new AiReplyStatusDto(userMessageId, AiReplyStatusDto.COMPLETED, mapToMessageDto(nextMessage.get()), null);
+        }
+        if (userMessage.getTimestamp().isBefore(LocalDateTime.now().minus(aiReplyStatusRetention))) {
+            return new AiReplyStatusDto(userMessageId, AiReplyStatusDto.FAILED, null, "Không có phản hồi từ AI cho tin nhắn này.");
+        }
+        return new AiReplyStatusDto(userMessageId, AiReplyStatusDto.PENDING, null, null);
+    }
+
+    /**
+     * Lưu tin nhắn AI (nếu nội dung không rỗng) và ghi nhận lượt chat vào Conversation
+     * (savedUserMessage là tin nhắn user của lượt này, đã được lưu trước đó).
+     * Trả về tin nhắn AI đã lưu, hoặc null nếu AI không trả về nội dung.
+     */
+    private Message persistAiReply(Message savedUserMessage, String aiResponseContent) {
+        String conversationId = savedUserMessage.getConversationId();
+        if (aiResponseContent == null || aiResponseContent.isBlank()) {
             logger.warn("AI response was null or blank for ConvID: {}. No AI message saved.", conversationId);
-            // Nếu không có phản hồi AI, vẫn nên save conversation vì updatedAt đã thay đổi do tin nhắn user
-            conversationRepository.save(conversation);
+            recordNewMessages(conversationId, 1, savedUserMessage);
+            return null;
         }
+        Message savedAiMessage = messageStore.append(new Message(conversationId, "AI", aiResponseContent));
+        logger.info("AI message saved for ConvID: {}", conversationId);
+        conversationSummarizer.markDirty(conversationId);
 
-        return mapToMessageDto(savedUserMessage);
+        recordNewMessages(conversationId, 2, savedAiMessage);
+        return savedAiMessage;
+    }
+
+    // Cập nhật số tin nhắn, thời gian và tin nhắn mới nhất của Conversation (phục vụ danh sách hội thoại)
+    private void recordNewMessages(String conversationId, int newMessages, Message lastMessage) {
+        if (!conversationRepository.recordNewMessages(conversationId, newMessages, lastMessage, LocalDateTime.now())) {
+            // Cuộc hội thoại có thể vừa bị xóa trong lúc chờ AI trả lời
+            logger.warn("Conversation {} not found while recording {} new message(s).", conversationId, newMessages);
+        }
     }
 
     @Override
@@ -166,12 +331,21 @@ public class ConversationServiceImpl implements ConversationService {
                     );
                 });
 
-        List<Message> messages = messageRepository.findByConversationIdOrderByTimestampAsc(conversationId);
+        List<Message> messages = messageStore.findAll(conversationId);
         return messages.stream()
                 .map(this::mapToMessageDto)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public MessagePageDto getConversationMessagesPage(String userId, String conversationId, String before, String after, Integer limit) {
+        logger.debug("Fetching message page for ConvID: {} for UserID: {} (before: {}, after: {}, limit: {})",
+                conversationId, userId, before, after, limit);
+        findConversationOrThrow(userId, conversationId, "Get message page");
+        return messagePageLoader.load(conversationId, before, after, limit, this::mapToMessageDto);
+    }
+
     @Override
     @Transactional
     public void deleteConversation(String userId, String conversationId) {
@@ -184,7 +358,8 @@ public class ConversationServiceImpl implements ConversationService {
                 });
 
         logger.info("Deleting all messages for conversationId: {}", conversationId);
-        messageRepository.deleteAllByConversationId(conversationId);
+        messageStore.deleteByConversationId(conversationId);
+        conversationSummaryRepository.deleteByConversationId(conversationId);
         logger.info("Deleting conversation with ID: {} for UserID: {}", conversationId, userId);
         conversationRepository.delete(conversation);
     }
@@ -192,26 +367,22 @@ public class ConversationServiceImpl implements ConversationService {
     @Override
     @Transactional
     public Optional<ConversationDto> updateConversationTitle(String userId, String conversationId, String newTitle) {
-        // Tìm kiếm cuộc hội thoại theo ID và UserID
-        Optional<Conversation> conversationOpt = conversationRepository.findByIdAndUserId(conversationId, userId);
-
-        if (conversationOpt.isPresent()) {
-            Conversation conversation = conversationOpt.get();
-
-            // Cập nhật tiêu đề mới
-            conversation.setTitle(newTitle);
-            conversation.setUpdatedAt(LocalDateTime.now()); // Cập nhật thời gian chỉnh sửa
-
-            // Lưu cuộc hội thoại đã được cập nhật
-            Conversation updatedConversation = conversationRepository.save(conversation);
-
-            // Trả về DTO đã được cập nhật
-            return Optional.of(mapToConversationDto(updatedConversation));
-        }
-
-        // Nếu không tìm thấy cuộc hội thoại, trả về Optional.empty
-        return Optional.empty();
+        // Cập nhật tiêu đề và thời gian chỉnh sửa bằng $set (chỉ khi cuộc hội thoại thuộc về user),
+        // không ghi đè message_count đang được các lượt chat khác tăng đồng thời
+        return conversationRepository.updateTitle(conversationId, userId, newTitle, LocalDateTime.now())
+                .map(this::mapToConversationDto);
     }
+    // Helper method để tìm Conversation thuộc về user hoặc ném ResourceNotFoundException
+    private Conversation findConversationOrThrow(String userId, String conversationId, String operation) {
+        return conversationRepository.findByIdAndUserId(conversationId, userId)
+                .orElseThrow(() -> {
+                    logger.warn("{} failed: conversation not found or unauthorized. UserID: {}, ConvID: {}", operation, userId, conversationId);
+                    return new ResourceNotFoundException(
+                            "Không tìm thấy cuộc hội thoại với ID: " + conversationId + " cho người dùng này."
+                    );
+                });
+    }
+
     // Helper methods to map entities to DTOs
     private ConversationDto mapToConversationDto(Conversation conversation) {
         if (conversation == null) return null;
@@ -221,7 +392,10 @@ public class ConversationServiceImpl implements ConversationService {
                 conversation.getTitle(),
                 conversation.getAiModel(),
                 conversation.getCreatedAt(),
-                conversation.getUpdatedAt()
+                conversation.getUpdatedAt(),
+                conversation.getMessageCount(),
+                conversation.getLastMessagePreview(),
+                conversation.getLastSender()
         );
     }
 
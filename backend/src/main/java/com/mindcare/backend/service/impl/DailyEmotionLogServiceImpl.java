@@ -2,20 +2,25 @@ package com.mindcare.backend.service.impl;
 
 import com.mindcare.backend.dto.emotion.DailyEmotionLogDto;
 import com.mindcare.backend.dto.emotion.DailyEmotionLogRequest;
+import com.mindcare.backend.dto.emotion.EmotionStatsResponseDto;
 import com.mindcare.backend.exception.ResourceNotFoundException;
 import com.mindcare.backend.model.DailyEmotionLog;
 import com.mindcare.backend.model.User;
 import com.mindcare.backend.repository.DailyEmotionLogRepository;
-import com.mindcare.backend.repository.UserRepository;
+import com.mindcare.backend.repository.EmotionRollupRepository;
+import com.mindcare.backend.security.services.UserCache;
 import com.mindcare.backend.service.interfaces.DailyEmotionLogService;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -27,18 +32,24 @@ public class DailyEmotionLogServiceImpl implements DailyEmotionLogService {
     private static final Logger logger = LoggerFactory.getLogger(DailyEmotionLogServiceImpl.class);
 
     private final DailyEmotionLogRepository dailyEmotionLogRepository;
-    private final UserRepository userRepository;
+    private final EmotionRollupRepository emotionRollupRepository;
+    private final UserCache userCache;
+    private final boolean rollupsEnabled;
 
     @Autowired
     public DailyEmotionLogServiceImpl(DailyEmotionLogRepository dailyEmotionLogRepository,
-                                      UserRepository userRepository) {
+                                      EmotionRollupRepository emotionRollupRepository,
+                                      UserCache userCache,
+                                      @Value("${app.emotions.rollups.enabled:true}") boolean rollupsEnabled) {
         this.dailyEmotionLogRepository = dailyEmotionLogRepository;
-        this.userRepository = userRepository;
+        this.emotionRollupRepository = emotionRollupRepository;
+        this.userCache = userCache;
+        this.rollupsEnabled = rollupsEnabled;
     }
 
     // Helper method để kiểm tra User tồn tại
     private User findUserByIdOrThrow(String userId) {
-        return userRepository.findById(userId)
+        return userCache.findById(userId)
                 .orElseThrow(() -> {
                     logger.warn("Attempt to operate on non-existent UserID: {}", userId);
                     return new ResourceNotFoundException("Không tìm thấy người dùng với ID: " + userId);
@@ -48,34 +59,25 @@ public class DailyEmotionLogServiceImpl implements DailyEmotionLogService {
     @Override
     @Transactional
     public DailyEmotionLogDto logOrUpdateDailyEmotion(String userId, DailyEmotionLogRequest emotionRequest) {
-        findUserByIdOrThrow(userId); // Kiểm tra user tồn tại
-
+        // Không kiểm tra user tồn tại: userId lấy từ JWT đã được xác thực
         LocalDate today = LocalDate.now();
         logger.info("Logging or updating daily emotion for UserID: {} on Date: {} with Emotion: {}",
                 userId, today, emotionRequest.getEmotion());
 
-        Optional<DailyEmotionLog> existingLogOpt = dailyEmotionLogRepository.findByUserIdAndLogDate(userId, today);
-
-        DailyEmotionLog logToSave;
-        if (existingLogOpt.isPresent()) {
-            logToSave = existingLogOpt.get();
-            logger.debug("Existing emotion log found for UserID: {}, Date: {}. Updating emotion to: {}",
-                    userId, today, emotionRequest.getEmotion());
-            logToSave.setEmotion(emotionRequest.getEmotion());
-            // Nếu có trường updatedAt, cập nhật ở đây. Hiện tại, model không có.
-            // logToSave.setUpdatedAt(LocalDateTime.now());
-        } else {
-            logger.debug("No existing emotion log found for UserID: {}, Date: {}. Creating new log with Emotion: {}",
-                    userId, today, emotionRequest.getEmotion());
-            logToSave = new DailyEmotionLog(
-                    userId,
-                    emotionRequest.getEmotion(),
-                    today
-            );
+        // ID sinh trước để biết ID của log mới mà không cần đọc lại sau khi upsert
+        DailyEmotionLog newLog = new DailyEmotionLog(userId, emotionRequest.getEmotion(), today);
+        newLog.setId(new ObjectId().toHexString());
+        Optional<DailyEmotionLog> previousLog = dailyEmotionLogRepository.upsertEmotion(newLog);
+
+        DailyEmotionLog savedLog = previousLog
+                .map(previous -> new DailyEmotionLog(previous.getId(), userId, emotionRequest.getEmotion(), today, previous.getCreatedAt()))
+                .orElse(newLog);
+        if (rollupsEnabled) {
+            String previousEmotion = previousLog.map(DailyEmotionLog::getEmotion).orElse(null);
+            emotionRollupRepository.applyChange(userId, YearMonth.from(today), previousEmotion, savedLog.getEmotion());
         }
-
-        DailyEmotionLog savedLog = dailyEmotionLogRepository.save(logToSave);
-        logger.info("Daily emotion log saved/updated successfully for UserID: {}. LogID: {}", userId, savedLog.getId());
+        logger.info("Daily emotion log {} for UserID: {}. LogID: {}",
+                previousLog.isPresent() ? "updated" : "created", userId, savedLog.getId());
         return mapToDto(savedLog);
     }
 
@@ -83,6 +85,10 @@ public class DailyEmotionLogServiceImpl implements DailyEmotionLogService {
     @Transactional(readOnly = true)
     public List<DailyEmotionLogDto> getEmotionLogsForPeriod(String userId, LocalDate startDate, LocalDate endDate) {
         findUserByIdOrThrow(userId); // Kiểm tra user tồn tại
+        return fetchEmotionLogs(userId, startDate, endDate);
+    }
+
+    private List<DailyEmotionLogDto> fetchEmotionLogs(String userId, LocalDate startDate, LocalDate endDate) {
         logger.debug("Fetching emotion logs for UserID: {} from {} to {}", userId, startDate, endDate);
 
         List<DailyEmotionLog> logs = dailyEmotionLogRepository.findByUserIdAndLogDateBetweenOrderByLogDateAsc(userId, startDate, endDate);
@@ -95,15 +101,59 @@ public class DailyEmotionLogServiceImpl implements DailyEmotionLogService {
     @Transactional(readOnly = true)
     public Map<String, Long> getEmotionStatsSummary(String userId, LocalDate startDate, LocalDate endDate) {
         findUserByIdOrThrow(userId); // Kiểm tra user tồn tại
+        return summarizeEmotions(userId, startDate, endDate);
+    }
+
+    private Map<String, Long> summarizeEmotions(String userId, LocalDate startDate, LocalDate endDate) {
         logger.debug("Fetching emotion stats summary for UserID: {} from {} to {}", userId, startDate, endDate);
 
-        List<DailyEmotionLog> logs = dailyEmotionLogRepository.findByUserIdAndLogDateBetweenOrderByLogDateAsc(userId, startDate, endDate);
+        if (!rollupsEnabled) {
+            return dailyEmotionLogRepository.countByEmotion(userId, startDate, endDate);
+        }
 
-        return logs.stream()
+        // Khoảng (startDate, endDate) không gồm hai đầu mút, giống findByUserIdAndLogDateBetweenOrderByLogDateAsc
+        LocalDate firstDay = startDate.plusDays(1);
+        LocalDate lastDay = endDate.minusDays(1);
+        if (firstDay.isAfter(lastDay)) {
+            return Map.of();
+        }
+        YearMonth firstFullMonth = firstDay.getDayOfMonth() == 1 ? YearMonth.from(firstDay) : YearMonth.from(firstDay).plusMonths(1);
+        YearMonth lastFullMonth = lastDay.equals(YearMonth.from(lastDay).atEndOfMonth()) ? YearMonth.from(lastDay) : YearMonth.from(lastDay).minusMonths(1);
+        if (firstFullMonth.isAfter(lastFullMonth)) {
+            // Không có tháng trọn vẹn nào: tối đa hai tháng lẻ, đếm trực tiếp trên log
+            return dailyEmotionLogRepository.countByEmotion(userId, startDate, endDate);
+        }
+
+        // Các tháng trọn vẹn đọc từ rollup, phần tháng lẻ ở hai đầu đếm trên log
+        Map<String, Long> summary = new HashMap<>(emotionRollupRepository.sumCounts(userId, firstFullMonth, lastFullMonth));
+        LocalDate firstFullDay = firstFullMonth.atDay(1);
+        LocalDate lastFullDay = lastFullMonth.atEndOfMonth();
+        if (firstDay.isBefore(firstFullDay)) {
+            dailyEmotionLogRepository.countByEmotion(userId, startDate, firstFullDay)
+                    .forEach((emotion, count) -> summary.merge(emotion, count, Long::sum));
+        }
+        if (lastDay.isAfter(lastFullDay)) {
+            dailyEmotionLogRepository.countByEmotion(userId, lastFullDay, endDate)
+                    .forEach((emotion, count) -> summary.merge(emotion, count, Long::sum));
+        }
+        return summary;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public EmotionStatsResponseDto getEmotionStats(String userId, LocalDate startDate, LocalDate endDate, boolean includeLogs) {
+        findUserByIdOrThrow(userId); // Kiểm tra user tồn tại (một lần cho cả danh sách và thống kê)
+        if (!includeLogs) {
+            return new EmotionStatsResponseDto(List.of(), summarizeEmotions(userId, startDate, endDate));
+        }
+        // Danh sách đã phải tải về để trả cho client: đếm luôn trên danh sách đó thay vì truy vấn lần hai
+        List<DailyEmotionLogDto> dailyLogs = fetchEmotionLogs(userId, startDate, endDate);
+        Map<String, Long> summary = dailyLogs.stream()
                 .collect(Collectors.groupingBy(
-                        DailyEmotionLog::getEmotion,
+                        DailyEmotionLogDto::getEmotion,
                         Collectors.counting()
                 ));
+        return new EmotionStatsResponseDto(dailyLogs, summary);
     }
 
 
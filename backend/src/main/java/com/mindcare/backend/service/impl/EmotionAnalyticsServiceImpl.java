@@ -0,0 +1,210 @@
+package com.mindcare.backend.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mindcare.backend.dto.admin.EmotionCohortTrendDto;
+import com.mindcare.backend.dto.admin.EmotionDailyShareDto;
+import com.mindcare.backend.dto.admin.NegativeStreakDto;
+import com.mindcare.backend.exception.BadRequestException;
+import com.mindcare.backend.repository.DailyEmotionLogRepository;
+import com.mindcare.backend.repository.EmotionCohortCounts;
+import com.mindcare.backend.repository.EmotionDayCounts;
+import com.mindcare.backend.repository.UserEmotionDay;
+import com.mindcare.backend.repository.UserRepository;
+import com.mindcare.backend.service.interfaces.EmotionAnalyticsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Các thống kê được tính hoàn toàn bằng aggregation trên MongoDB (allowDiskUse): JVM chỉ nhận các nhóm đã gộp
+ * (ngày x cảm xúc, nhóm x tháng x cảm xúc). Chuỗi ngày tiêu cực được tính khi đọc dần cursor đã sắp xếp theo
+ * (user_id, log_date), chỉ giữ trong bộ nhớ chuỗi của người dùng đang xét và top {@code limit} kết quả.
+ */
+@Service
+public class EmotionAnalyticsServiceImpl implements EmotionAnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmotionAnalyticsServiceImpl.class);
+
+    private record Streak(String userId, LocalDate start, LocalDate end) {
+        int days() {
+            return (int) ChronoUnit.DAYS.between(start, end) + 1;
+        }
+    }
+
+    // Chuỗi ngắn nhất (cũ nhất nếu bằng nhau) đứng đầu hàng đợi để bị loại trước
+    private static final Comparator<Streak> STREAK_ORDER = Comparator.comparingInt(Streak::days)
+            .thenComparing(Streak::end);
+
+    private final DailyEmotionLogRepository dailyEmotionLogRepository;
+    private final UserRepository userRepository;
+    private final Set<String> negativeEmotions;
+    private final int maxRangeDays;
+    private final int defaultMinStreakDays;
+    private final int defaultStreakLimit;
+    private final int maxStreakLimit;
+    // Khóa: (loại thống kê, startDate, endDate, các tham số khác)
+    private final Cache<List<Object>, Object> results;
+
+    @Autowired
+    public EmotionAnalyticsServiceImpl(DailyEmotionLogRepository dailyEmotionLogRepository,
+                                       UserRepository userRepository,
+                                       @Value("${app.admin.analytics.negative-emotions:anxious,sad,angry}") String[] negativeEmotions,
+                                       @Value("${app.admin.analytics.max-range-days:1096}") int maxRangeDays,
+                                       @Value("${app.admin.analytics.streak.min-days:3}") int defaultMinStreakDays,
+                                       @Value("${app.admin.analytics.streak.default-limit:50}") int defaultStreakLimit,
+                                       @Value("${app.admin.analytics.streak.max-limit:500}") int maxStreakLimit,
+                                       @Value("${app.admin.analytics.cache.ttl:10m}") Duration cacheTtl,
+                                       @Value("${app.admin.analytics.cache.max-entries:200}") long cacheMaxEntries,
+                                       MeterRegistry meterRegistry) {
+        this.dailyEmotionLogRepository = dailyEmotionLogRepository;
+        this.userRepository = userRepository;
+        this.negativeEmotions = Set.of(negativeEmotions);
+        this.maxRangeDays = maxRangeDays;
+        this.defaultMinStreakDays = defaultMinStreakDays;
+        this.defaultStreakLimit = defaultStreakLimit;
+        this.maxStreakLimit = maxStreakLimit;
+        this.results = Caffeine.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, results, "admin.analytics");
+    }
+
+    @Override
+    public List<EmotionDailyShareDto> getDailyEmotionShares(LocalDate startDate, LocalDate endDate) {
+        validateRange(startDate, endDate);
+        return cached(List.of("daily", startDate, endDate), () -> {
+            logger.info("Admin analytics: computing daily emotion shares from {} to {}", startDate, endDate);
+            List<EmotionDayCounts> days = dailyEmotionLogRepository.countByDayAndEmotion(startDate, endDate);
+            return days.stream().map(day -> {
+                long total = total(day.counts());
+                Map<String, Double> shares = new LinkedHashMap<>();
+                day.counts().forEach((emotion, count) -> shares.put(emotion, (double) count / total));
+                return new EmotionDailyShareDto(day.day(), total, day.counts(), shares);
+            }).collect(Collectors.toList());
+        });
+    }
+
+    @Override
+    public List<EmotionCohortTrendDto> getCohortTrends(LocalDate startDate, LocalDate endDate) {
+        validateRange(startDate, endDate);
+        return cached(List.of("cohorts", startDate, endDate), () -> {
+            logger.info("Admin analytics: computing cohort trends from {} to {}", startDate, endDate);
+            List<EmotionCohortCounts> cohorts = dailyEmotionLogRepository.countByCohortAndMonth(startDate, endDate);
+            return cohorts.stream().map(cohort -> {
+                long total = total(cohort.counts());
+                long negative = cohort.counts().entrySet().stream()
+                        .filter(entry -> negativeEmotions.contains(entry.getKey()))
+                        .mapToLong(Map.Entry::getValue)
+                        .sum();
+                return new EmotionCohortTrendDto(cohort.cohort(), cohort.period(), cohort.activeUsers(), total,
+                        cohort.counts(), total == 0 ? 0 : (double) negative / total);
+            }).collect(Collectors.toList());
+        });
+    }
+
+    @Override
+    public List<NegativeStreakDto> getNegativeStreaks(LocalDate startDate, LocalDate endDate, Integer minDays, Integer limit) {
+        validateRange(startDate, endDate);
+        if (minDays != null && minDays < 1) {
+            throw new BadRequestException("Lỗi: Tham số 'minDays' phải lớn hơn 0.");
+        }
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("Lỗi: Tham số 'limit' phải lớn hơn 0.");
+        }
+        int minStreakDays = minDays == null ? defaultMinStreakDays : minDays;
+        int maxResults = limit == null ? defaultStreakLimit : Math.min(limit, maxStreakLimit);
+        return cached(List.of("streaks", startDate, endDate, minStreakDays, maxResults), () -> {
+            logger.info("Admin analytics: computing negative streaks (>= {} days) from {} to {}", minStreakDays, startDate, endDate);
+            List<Streak> streaks = findLongestStreaks(startDate, endDate, minStreakDays, maxResults);
+            // User đã bị đánh dấu deleted (đang chờ xóa dữ liệu) không có trong usernames và bị bỏ khỏi kết quả
+            Map<String, String> usernames = userRepository.findUsernames(streaks.stream().map(Streak::userId).toList());
+            return streaks.stream()
+                    .filter(streak -> usernames.containsKey(streak.userId()))
+                    .map(streak -> new NegativeStreakDto(streak.userId(), usernames.get(streak.userId()),
+                            streak.days(), streak.start(), streak.end()))
+                    .collect(Collectors.toList());
+        });
+    }
+
+    // Chuỗi dài nhất của mỗi người dùng, giữ lại top maxResults bằng min-heap (sắp xếp giảm dần khi trả về)
+    private List<Streak> findLongestStreaks(LocalDate startDate, LocalDate endDate, int minStreakDays, int maxResults) {
+        PriorityQueue<Streak> top = new PriorityQueue<>(STREAK_ORDER);
+        try (Stream<UserEmotionDay> days = dailyEmotionLogRepository.streamDaysWithEmotion(startDate, endDate, negativeEmotions)) {
+            Streak longest = null;
+            Streak current = null;
+            for (UserEmotionDay day : (Iterable<UserEmotionDay>) days::iterator) {
+                if (current == null || !current.userId().equals(day.userId())) {
+                    offer(top, longest, minStreakDays, maxResults);
+                    current = new Streak(day.userId(), day.logDate(), day.logDate());
+                    longest = current;
+                    continue;
+                }
+                current = day.logDate().equals(current.end().plusDays(1))
+                        ? new Streak(current.userId(), current.start(), day.logDate())
+                        : new Streak(current.userId(), day.logDate(), day.logDate());
+                if (current.days() > longest.days()) {
+                    longest = current;
+                }
+            }
+            offer(top, longest, minStreakDays, maxResults);
+        }
+        List<Streak> streaks = new ArrayList<>(top);
+        streaks.sort(STREAK_ORDER.reversed());
+        return streaks;
+    }
+
+    private static void offer(PriorityQueue<Streak> top, Streak streak, int minStreakDays, int maxResults) {
+        if (streak == null || streak.days() < minStreakDays) {
+            return;
+        }
+        top.add(streak);
+        if (top.size() > maxResults) {
+            top.poll();
+        }
+    }
+
+    private void validateRange(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null || startDate.isAfter(endDate)) {
+            throw new BadRequestException("Lỗi: Ngày bắt đầu và kết thúc không hợp lệ.");
+        }
+        if (ChronoUnit.DAYS.between(startDate, endDate) + 1 > maxRangeDays) {
+            throw new BadRequestException("Lỗi: Khoảng thời gian không được vượt quá " + maxRangeDays + " ngày.");
+        }
+    }
+
+    // Không dùng Cache.get(key, loader): aggregation có thể chạy lâu và không nên giữ khóa của Caffeine
+    @SuppressWarnings("unchecked")
+    private <T> T cached(List<Object> key, Supplier<T> compute) {
+        Object value = results.getIfPresent(key);
+        if (value == null) {
+            value = compute.get();
+            results.put(key, value);
+        }
+        return (T) value;
+    }
+
+    private static long total(Map<String, Long> counts) {
+        return counts.values().stream().mapToLong(Long::longValue).sum();
+    }
+}
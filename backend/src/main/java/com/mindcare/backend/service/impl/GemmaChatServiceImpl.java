@@ -5,46 +5,138 @@ import com.mindcare.backend.dto.ai.OllamaChatRequest;
 import com.mindcare.backend.dto.ai.OllamaChatResponse;
 import com.mindcare.backend.dto.conversation.MessageDto;
 import com.mindcare.backend.exception.AiServiceException; // ✨ IMPORT CUSTOM EXCEPTION ✨
+import com.mindcare.backend.service.ai.AiMetrics;
+import com.mindcare.backend.service.ai.ModelResidencyPolicy;
+import com.mindcare.backend.service.ai.OllamaNodePool;
 import com.mindcare.backend.service.interfaces.AiChatService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException; // Import để bắt lỗi HTTP cụ thể
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-// import java.util.Map; // Bỏ comment nếu bạn muốn dùng options cho OllamaChatRequest
 
 @Service
 public class GemmaChatServiceImpl implements AiChatService {
 
     private static final Logger logger = LoggerFactory.getLogger(GemmaChatServiceImpl.class);
+    private static final Duration STREAM_IDLE_TIMEOUT = Duration.ofSeconds(60);
 
-    private final WebClient webClient;
+    private final OllamaNodePool nodePool;
     private final String ollamaModelName;
     private final String systemPromptContent;
+    private final ModelResidencyPolicy residencyPolicy;
+    private final AiMetrics aiMetrics;
+
+    @Value("${ai.ollama.preload-on-startup:true}")
+    private boolean preloadOnStartup;
 
     @Autowired
-    public GemmaChatServiceImpl(WebClient.Builder webClientBuilder,
-                                @Value("${ollama.api.baseurl:http://localhost:11434}") String ollamaApiBaseUrl,
+    public GemmaChatServiceImpl(OllamaNodePool nodePool,
                                 @Value("${ollama.model.name}") String ollamaModelName,
-                                @Value("${gemma.system.prompt}") String systemPromptContent) {
-        this.webClient = webClientBuilder.baseUrl(ollamaApiBaseUrl).build();
+                                @Value("${gemma.system.prompt}") String systemPromptContent,
+                                ModelResidencyPolicy residencyPolicy,
+                                AiMetrics aiMetrics) {
+        this.nodePool = nodePool;
         this.ollamaModelName = ollamaModelName;
-        this.systemPromptContent = systemPromptContent;
-        logger.info("GemmaChatService initialized with base URL: {}, model: {}", ollamaApiBaseUrl, ollamaModelName);
+        // Cố định system prompt (bỏ khoảng trắng thừa) để mọi request có cùng prefix, giúp Ollama tái sử dụng prompt cache
+        this.systemPromptContent = systemPromptContent != null ? systemPromptContent.strip() : null;
+        this.residencyPolicy = residencyPolicy;
+        this.aiMetrics = aiMetrics;
+        logger.info("GemmaChatService initialized with base URLs: {}, model: {}", nodePool.baseUrls(), ollamaModelName);
     }
 
     @Override
     public String getAiResponse(String conversationId, List<MessageDto> conversationHistory, String userMessage) {
+        // Chế độ đồng bộ: chờ Mono hoàn thành trên thread hiện tại
+        return getAiResponseAsync(conversationId, conversationHistory, userMessage).block();
+    }
+
+    @Override
+    public Mono<String> getAiResponseAsync(String conversationId, List<MessageDto> conversationHistory, String userMessage) {
         logger.debug("Requesting AI response for conversationId: {}. User message: '{}'", conversationId, userMessage);
 
+        // 1 -> 3. Tạo Request Body cho Ollama (system prompt + lịch sử hội thoại)
+        OllamaChatRequest ollamaRequest = buildOllamaRequest(conversationHistory, false);
+
+        // 4. Gọi API Ollama bằng WebClient (non-blocking, không giữ thread nào trong lúc chờ model)
+        return aiMetrics.instrument(this.ollamaModelName, nodePool.execute(conversationId, webClient -> webClient.post()
+                .uri("/api/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(ollamaRequest)
+                .retrieve()
+                .bodyToMono(OllamaChatResponse.class)
+                .timeout(Duration.ofSeconds(60))) // Đặt timeout
+                .doOnSubscribe(s -> logger.info("Sending request to Ollama model: {}. Number of messages in context: {}",
+                        this.ollamaModelName, ollamaRequest.getMessages().size()))
+                .doOnNext(ollamaResponse -> aiMetrics.recordOllamaResponse(this.ollamaModelName, ollamaResponse))
+                .flatMap(ollamaResponse -> {
+                    if (ollamaResponse.getMessage() != null && ollamaResponse.getMessage().getContent() != null) {
+                        logger.info("Received response from Ollama successfully for conversationId: {}", conversationId);
+                        return Mono.just(ollamaResponse.getMessage().getContent());
+                    }
+                    logger.error("Received invalid or empty content from Ollama. Response: {}", ollamaResponse);
+                    return Mono.<String>error(new AiServiceException("Phản hồi không hợp lệ hoặc rỗng từ dịch vụ AI."));
+                })
+                .switchIfEmpty(Mono.error(() -> {
+                    logger.error("Received empty response body from Ollama for conversationId: {}", conversationId);
+                    return new AiServiceException("Phản hồi không hợp lệ hoặc rỗng từ dịch vụ AI.");
+                }))
+                .onErrorMap(e -> !(e instanceof AiServiceException), e -> toAiServiceException(conversationId, e)));
+    }
+
+    @Override
+    public Flux<String> streamAiResponse(String conversationId, List<MessageDto> conversationHistory, String userMessage) {
+        logger.debug("Requesting streamed AI response for conversationId: {}. User message: '{}'", conversationId, userMessage);
+
+        OllamaChatRequest ollamaRequest = buildOllamaRequest(conversationHistory, true);
+
+        // Ollama trả về NDJSON: mỗi dòng là một OllamaChatResponse chứa một đoạn nội dung,
+        // dòng cuối cùng có done=true kèm các chỉ số thời gian.
+        return aiMetrics.instrumentStream(this.ollamaModelName, nodePool.executeStream(conversationId, webClient -> webClient.post()
+                .uri("/api/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(ollamaRequest)
+                .retrieve()
+                .bodyToFlux(OllamaChatResponse.class)
+                .timeout(STREAM_IDLE_TIMEOUT)) // Timeout giữa hai chunk liên tiếp, không phải cho toàn bộ câu trả lời
+                .doOnSubscribe(s -> logger.info("Opening stream to Ollama model: {}. Number of messages in context: {}",
+                        this.ollamaModelName, ollamaRequest.getMessages().size()))
+                .doOnNext(chunk -> {
+                    if (chunk.isDone()) { // Chunk cuối cùng chứa các chỉ số thời gian
+                        aiMetrics.recordOllamaResponse(this.ollamaModelName, chunk);
+                    }
+                })
+                .doOnComplete(() -> logger.info("Ollama stream completed for conversationId: {}", conversationId))
+                .filter(chunk -> chunk.getMessage() != null && chunk.getMessage().getContent() != null
+                        && !chunk.getMessage().getContent().isEmpty())
+                .map(chunk -> chunk.getMessage().getContent())
+                .onErrorMap(e -> !(e instanceof AiServiceException), e -> toAiServiceException(conversationId, e)));
+    }
+
+    // Chuyển lỗi từ WebClient (HTTP, timeout, connection error) thành AiServiceException
+    private AiServiceException toAiServiceException(String conversationId, Throwable e) {
+        if (e instanceof WebClientResponseException wcre) { // Bắt lỗi HTTP cụ thể từ WebClient
+            logger.error("Ollama API error for conversationId {}: Status Code {}, Body {}", conversationId, wcre.getStatusCode(), wcre.getResponseBodyAsString(), e);
+            return new AiServiceException("Lỗi từ dịch vụ AI: " + wcre.getStatusCode() + " - " + wcre.getResponseBodyAsString(), e);
+        }
+        // Các lỗi khác (ví dụ: timeout, connection error)
+        logger.error("Error calling Ollama API for conversationId {}: {}", conversationId, e.getMessage(), e);
+        return new AiServiceException("Lỗi khi giao tiếp với dịch vụ AI: " + e.getMessage(), e);
+    }
+
+    // Dựng request cho Ollama: system prompt + (bản tóm tắt) + lịch sử hội thoại (đã bao gồm tin nhắn user mới nhất)
+    private OllamaChatRequest buildOllamaRequest(List<MessageDto> conversationHistory, boolean stream) {
         List<OllamaChatMessage> messagesForOllama = new ArrayList<>();
 
         // 1. Thêm System Prompt
@@ -59,48 +151,48 @@ public class GemmaChatServiceImpl implements AiChatService {
                 if ("AI".equalsIgnoreCase(historyMsg.getSender()) ||
                         "ASSISTANT".equalsIgnoreCase(historyMsg.getSender())) {
                     role = "assistant";
+                } else if ("SYSTEM".equalsIgnoreCase(historyMsg.getSender())) {
+                    role = "system"; // Ví dụ: bản tóm tắt các lượt cũ của cuộc hội thoại
                 }
                 messagesForOllama.add(new OllamaChatMessage(role, historyMsg.getContent()));
             }
         }
 
-
         // 3. Tạo Request Body cho Ollama
         OllamaChatRequest ollamaRequest = new OllamaChatRequest();
         ollamaRequest.setModel(this.ollamaModelName);
         ollamaRequest.setMessages(messagesForOllama); // messagesForOllama nên là toàn bộ context bao gồm cả tin nhắn user mới nhất
-        ollamaRequest.setStream(false);
-        // Ví dụ options:
-        // ollamaRequest.setOptions(Map.of("temperature", 0.7));
-
-        // 4. Gọi API Ollama bằng WebClient
-        try {
-            logger.info("Sending request to Ollama model: {}. Number of messages in context: {}", this.ollamaModelName, messagesForOllama.size());
-            OllamaChatResponse ollamaResponse = webClient.post()
-                    .uri("/api/chat")
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .bodyValue(ollamaRequest)
-                    .retrieve()
-                    .bodyToMono(OllamaChatResponse.class)
-                    .timeout(Duration.ofSeconds(60)) // Đặt timeout
-                    .block();
-
-            if (ollamaResponse != null && ollamaResponse.getMessage() != null && ollamaResponse.getMessage().getContent() != null) {
-                logger.info("Received response from Ollama successfully for conversationId: {}", conversationId);
-                return ollamaResponse.getMessage().getContent();
-            } else {
-                logger.error("Received invalid or empty content from Ollama. Response: {}", ollamaResponse);
-                // NÉM AiServiceException
-                throw new AiServiceException("Phản hồi không hợp lệ hoặc rỗng từ dịch vụ AI.");
-            }
-        } catch (WebClientResponseException e) { // Bắt lỗi HTTP cụ thể từ WebClient
-            logger.error("Ollama API error for conversationId {}: Status Code {}, Body {}", conversationId, e.getStatusCode(), e.getResponseBodyAsString(), e);
-            // NÉM AiServiceException
-            throw new AiServiceException("Lỗi từ dịch vụ AI: " + e.getStatusCode() + " - " + e.getResponseBodyAsString(), e);
-        } catch (Exception e) { // Bắt các lỗi khác (ví dụ: timeout, connection error)
-            logger.error("Error calling Ollama API for conversationId {}: {}", conversationId, e.getMessage(), e);
-            // NÉM AiServiceException
-            throw new AiServiceException("Lỗi khi giao tiếp với dịch vụ AI: " + e.getMessage(), e);
+        ollamaRequest.setStream(stream);
+        ollamaRequest.setKeepAlive(residencyPolicy.keepAlive());
+        ollamaRequest.setOptions(residencyPolicy.options());
+        return ollamaRequest;
+    }
+
+    /**
+     * Nạp sẵn model vào memory của mọi node khi ứng dụng khởi động (request chat không có tin nhắn),
+     * để người dùng đầu tiên không phải chờ cold load.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadModel() {
+        if (!preloadOnStartup) {
+            return;
         }
+        OllamaChatRequest preloadRequest = new OllamaChatRequest();
+        preloadRequest.setModel(this.ollamaModelName);
+        preloadRequest.setMessages(List.of());
+        preloadRequest.setKeepAlive(residencyPolicy.keepAlive());
+        preloadRequest.setOptions(residencyPolicy.options());
+
+        nodePool.broadcast(webClient -> webClient.post()
+                        .uri("/api/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(preloadRequest)
+                        .retrieve()
+                        .bodyToMono(OllamaChatResponse.class)
+                        .timeout(Duration.ofSeconds(120)))
+                .subscribe(response -> {
+                    aiMetrics.recordOllamaResponse(this.ollamaModelName, response);
+                    logger.info("Ollama model {} preloaded (keep_alive: {})", this.ollamaModelName, residencyPolicy.keepAlive());
+                });
     }
 }
\ No newline at end of file
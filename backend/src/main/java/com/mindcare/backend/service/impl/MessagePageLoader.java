@@ -0,0 +1,72 @@
+package com.mindcare.backend.service.impl;
+
+import com.mindcare.backend.dto.conversation.MessageDto;
+import com.mindcare.backend.dto.conversation.MessagePageDto;
+import com.mindcare.backend.exception.BadRequestException;
+import com.mindcare.backend.model.Message;
+import com.mindcare.backend.repository.MessageCursor;
+import com.mindcare.backend.repository.MessageStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Đọc lịch sử tin nhắn theo trang bằng cursor (keyset trên (timestamp, _id)),
+ * dùng chung cho API của người dùng và của admin. Việc kiểm tra quyền truy cập cuộc hội thoại do service gọi đảm nhiệm.
+ */
+@Component
+class MessagePageLoader {
+
+    private final MessageStore messageStore;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    @Autowired
+    MessagePageLoader(MessageStore messageStore,
+                      @Value("${app.messages.page.default-size:30}") int defaultPageSize,
+                      @Value("${app.messages.page.max-size:100}") int maxPageSize) {
+        this.messageStore = messageStore;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    MessagePageDto load(String conversationId, String before, String after, Integer limit, Function<Message, MessageDto> mapper) {
+        if (before != null && after != null) {
+            throw new BadRequestException("Lỗi: Chỉ được dùng một trong hai tham số 'before' hoặc 'after'.");
+        }
+        if (limit != null && limit < 1) {
+            throw new BadRequestException("Lỗi: Tham số 'limit' phải lớn hơn 0.");
+        }
+        int pageSize = limit == null ? defaultPageSize : Math.min(limit, maxPageSize);
+
+        List<Message> fetched = messageStore.findPage(
+                conversationId, decode(before), decode(after), pageSize);
+        boolean hasMore = fetched.size() > pageSize;
+        List<Message> page = !hasMore ? fetched
+                : after != null ? fetched.subList(0, pageSize)      // Phần tử thừa nằm ở cuối khi đọc tới
+                : fetched.subList(1, fetched.size());               // và ở đầu khi đọc về quá khứ
+
+        List<MessageDto> messages = page.stream().map(mapper).toList();
+        String beforeCursor = page.isEmpty() ? null : cursorOf(page.get(0));
+        String afterCursor = page.isEmpty() ? null : cursorOf(page.get(page.size() - 1));
+        return new MessagePageDto(messages, beforeCursor, afterCursor, hasMore);
+    }
+
+    private static MessageCursor decode(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        try {
+            return MessageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Lỗi: Cursor phân trang không hợp lệ.", e);
+        }
+    }
+
+    private static String cursorOf(Message message) {
+        return new MessageCursor(message.getTimestamp(), message.getId()).encode();
+    }
+}
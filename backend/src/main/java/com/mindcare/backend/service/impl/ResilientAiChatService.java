@@ -0,0 +1,293 @@
+package com.mindcare.backend.service.impl;
+
+import com.mindcare.backend.dto.conversation.MessageDto;
+import com.mindcare.backend.exception.AiServiceException;
+import com.mindcare.backend.service.ai.OllamaNodePool;
+import com.mindcare.backend.service.interfaces.AiChatService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Lớp bảo vệ quanh GemmaChatServiceImpl:
+ *
+ * - Retry có jitter khi lỗi kết nối (node Ollama không truy cập được); lỗi khác không được retry.
+ * - Circuit breaker: sau {@code ai.resilience.breaker.failure-threshold} lần lỗi liên tiếp thì từ chối ngay
+ *   trong {@code ai.resilience.breaker.open-duration}, sau đó cho một lời gọi thử (HALF_OPEN).
+ * - Hedged request (chỉ khi có nhiều node Ollama): nếu lời gọi không stream chưa xong sau p95 độ trễ gần đây,
+ *   gửi thêm một request tới node khác và dùng kết quả về trước.
+ *
+ * Chuyển trạng thái của circuit breaker, số lần retry và hedge được xuất thành metric.
+ */
+@Service
+@Primary
+public class ResilientAiChatService implements AiChatService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResilientAiChatService.class);
+
+    enum BreakerState { CLOSED, OPEN, HALF_OPEN }
+
+    private final AiChatService delegate;
+    private final OllamaNodePool nodePool;
+    private final MeterRegistry meterRegistry;
+
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final boolean hedgingEnabled;
+    private final LatencyWindow latencyWindow;
+
+    // Trạng thái circuit breaker, được bảo vệ bởi khóa của đối tượng này
+    private BreakerState state = BreakerState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean halfOpenTrialInFlight;
+
+    private final Counter retryCounter;
+    private final Counter rejectedCounter;
+
+    @Autowired
+    public ResilientAiChatService(@Qualifier("gemmaChatServiceImpl") AiChatService delegate,
+                                  OllamaNodePool nodePool,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${ai.resilience.retry.max-retries:2}") int maxRetries,
+                                  @Value("${ai.resilience.retry.backoff:200ms}") Duration retryBackoff,
+                                  @Value("${ai.resilience.breaker.failure-threshold:5}") int failureThreshold,
+                                  @Value("${ai.resilience.breaker.open-duration:30s}") Duration openDuration,
+                                  @Value("${ai.resilience.hedge.enabled:true}") boolean hedgingEnabled,
+                                  @Value("${ai.resilience.hedge.initial-delay:20s}") Duration initialHedgeDelay,
+                                  @Value("${ai.resilience.hedge.min-delay:2s}") Duration minHedgeDelay) {
+        this.delegate = delegate;
+        this.nodePool = nodePool;
+        this.meterRegistry = meterRegistry;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.hedgingEnabled = hedgingEnabled;
+        this.latencyWindow = new LatencyWindow(200, 20, initialHedgeDelay, minHedgeDelay);
+
+        Gauge.builder("ai.breaker.state", this, service -> service.currentState().ordinal())
+                .description("Trạng thái circuit breaker của dịch vụ AI (0=CLOSED, 1=OPEN, 2=HALF_OPEN)")
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("ai.retries")
+                .description("Số lần gọi lại dịch vụ AI sau lỗi kết nối")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("ai.breaker.rejected")
+                .description("Số lời gọi AI bị từ chối ngay vì circuit breaker đang mở")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getAiResponse(String conversationId, List<MessageDto> conversationHistory, String userMessage) {
+        return getAiResponseAsync(conversationId, conversationHistory, userMessage).block();
+    }
+
+    @Override
+    public Mono<String> getAiResponseAsync(String conversationId, List<MessageDto> conversationHistory, String userMessage) {
+        return Mono.defer(() -> {
+            if (!tryAcquireBreaker()) {
+                return Mono.<String>error(breakerOpenException());
+            }
+            long startNanos = System.nanoTime();
+            Mono<String> attempt = withRetry(conversationId,
+                    Mono.defer(() -> delegate.getAiResponseAsync(conversationId, conversationHistory, userMessage)));
+            return hedged(conversationId, attempt)
+                    .doOnSuccess(reply -> {
+                        latencyWindow.record(System.nanoTime() - startNanos);
+                        onCallSucceeded();
+                    })
+                    .doOnError(e -> onCallFailed(e))
+                    .doOnCancel(this::onCallCancelled);
+        }).contextWrite(context -> context.put(OllamaNodePool.TRIED_NODES, ConcurrentHashMap.newKeySet()));
+    }
+
+    @Override
+    public Flux<String> streamAiResponse(String conversationId, List<MessageDto> conversationHistory, String userMessage) {
+        return Flux.defer(() -> {
+            if (!tryAcquireBreaker()) {
+                return Flux.<String>error(breakerOpenException());
+            }
+            // Chỉ retry khi chưa có token nào được gửi cho client, tránh lặp nội dung
+            AtomicBoolean emitted = new AtomicBoolean(false);
+            Flux<String> stream = Flux.defer(() -> delegate.streamAiResponse(conversationId, conversationHistory, userMessage))
+                    .doOnNext(token -> emitted.set(true));
+            return stream
+                    .retryWhen(retrySpec(conversationId, e -> !emitted.get() && isConnectionError(e)))
+                    .doOnComplete(this::onCallSucceeded)
+                    .doOnError(e -> onCallFailed(e))
+                    .doOnCancel(this::onCallCancelled);
+        }).contextWrite(context -> context.put(OllamaNodePool.TRIED_NODES, ConcurrentHashMap.newKeySet()));
+    }
+
+    private Mono<String> withRetry(String conversationId, Mono<String> call) {
+        return call.retryWhen(retrySpec(conversationId, ResilientAiChatService::isConnectionError));
+    }
+
+    private Retry retrySpec(String conversationId, Predicate<Throwable> retryable) {
+        return Retry.backoff(maxRetries, retryBackoff)
+                .jitter(0.5)
+                .filter(retryable)
+                .doBeforeRetry(signal -> {
+                    retryCounter.increment();
+                    logger.warn("Retrying AI call for ConvID: {} (attempt {}): {}",
+                            conversationId, signal.totalRetries() + 2, signal.failure().getMessage());
+                })
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    // Gửi thêm một request tới node khác nếu request đầu chậm hơn p95 gần đây; kết quả về trước được dùng
+    private Mono<String> hedged(String conversationId, Mono<String> attempt) {
+        if (!hedgingEnabled || nodePool.size() < 2) {
+            return attempt;
+        }
+        Duration hedgeDelay = latencyWindow.hedgeDelay();
+        // Request đầu lỗi trước khi tới hạn hedge thì không gửi thêm (và không phải chờ hết hedgeDelay)
+        Sinks.Empty<Void> primaryFailed = Sinks.empty();
+        AtomicReference<Throwable> lastError = new AtomicReference<>();
+        Mono<String> primary = attempt
+                .doOnSuccess(reply -> hedgeOutcome("primary"))
+                .doOnError(e -> {
+                    lastError.set(e);
+                    primaryFailed.tryEmitEmpty();
+                });
+        Mono<String> hedge = Mono.delay(hedgeDelay)
+                .takeUntilOther(primaryFailed.asMono())
+                .flatMap(tick -> {
+                    logger.info("AI call for ConvID: {} slower than {} ms, sending hedged request", conversationId, hedgeDelay.toMillis());
+                    meterRegistry.counter("ai.hedge.requests").increment();
+                    return attempt
+                            .doOnSuccess(reply -> hedgeOutcome("hedge"))
+                            .doOnError(lastError::set);
+                });
+        // Khi không nhánh nào thành công, Mono.firstWithValue báo lỗi tổng hợp: trả về lỗi gốc gần nhất thay vào đó
+        return Mono.firstWithValue(primary, hedge)
+                .onErrorMap(e -> lastError.get() != null ? lastError.get() : e);
+    }
+
+    private void hedgeOutcome(String winner) {
+        meterRegistry.counter("ai.hedge.winner", "winner", winner).increment();
+    }
+
+    private static boolean isConnectionError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof WebClientRequestException || cause instanceof ConnectException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // --- Circuit breaker ---
+
+    private synchronized boolean tryAcquireBreaker() {
+        if (state == BreakerState.OPEN && System.nanoTime() - openedAtNanos >= openDuration.toNanos()) {
+            transitionTo(BreakerState.HALF_OPEN);
+        }
+        if (state == BreakerState.CLOSED) {
+            return true;
+        }
+        if (state == BreakerState.HALF_OPEN && !halfOpenTrialInFlight) {
+            halfOpenTrialInFlight = true; // Chỉ cho một lời gọi thử khi HALF_OPEN
+            return true;
+        }
+        rejectedCounter.increment();
+        return false;
+    }
+
+    private synchronized void onCallSucceeded() {
+        consecutiveFailures = 0;
+        halfOpenTrialInFlight = false;
+        if (state != BreakerState.CLOSED) {
+            transitionTo(BreakerState.CLOSED);
+        }
+    }
+
+    private synchronized void onCallFailed(Throwable e) {
+        halfOpenTrialInFlight = false;
+        consecutiveFailures++;
+        if (state == BreakerState.HALF_OPEN
+                || (state == BreakerState.CLOSED && consecutiveFailures >= failureThreshold)) {
+            logger.error("Opening AI circuit breaker after {} consecutive failure(s). Last error: {}", consecutiveFailures, e.getMessage());
+            openedAtNanos = System.nanoTime();
+            transitionTo(BreakerState.OPEN);
+        }
+    }
+
+    // Client hủy: lời gọi thử (nếu có) không cho biết backend khỏe hay không, cho phép lời gọi thử khác
+    private synchronized void onCallCancelled() {
+        halfOpenTrialInFlight = false;
+    }
+
+    private synchronized BreakerState currentState() {
+        return state;
+    }
+
+    private void transitionTo(BreakerState next) {
+        logger.info("AI circuit breaker: {} -> {}", state, next);
+        meterRegistry.counter("ai.breaker.transitions", "from", state.name(), "to", next.name()).increment();
+        state = next;
+    }
+
+    private AiServiceException breakerOpenException() {
+        return new AiServiceException("Dịch vụ AI tạm thời không khả dụng, vui lòng thử lại sau.");
+    }
+
+    /**
+     * Cửa sổ trượt các độ trễ thành công gần nhất, dùng để tính p95 làm ngưỡng gửi hedged request.
+     */
+    static final class LatencyWindow {
+        private final long[] samples;
+        private final int minSamples;
+        private final Duration initialDelay;
+        private final Duration minDelay;
+        private int next;
+        private int count;
+
+        LatencyWindow(int capacity, int minSamples, Duration initialDelay, Duration minDelay) {
+            this.samples = new long[capacity];
+            this.minSamples = minSamples;
+            this.initialDelay = initialDelay;
+            this.minDelay = minDelay;
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        // Chưa đủ mẫu thì dùng giá trị cấu hình ban đầu
+        synchronized Duration hedgeDelay() {
+            if (count < minSamples) {
+                return initialDelay;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            Duration p95 = Duration.ofNanos(sorted[(int) Math.ceil(count * 0.95) - 1]);
+            return p95.compareTo(minDelay) < 0 ? minDelay : p95;
+        }
+    }
+}
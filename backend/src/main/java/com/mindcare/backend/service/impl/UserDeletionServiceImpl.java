@@ -0,0 +1,237 @@
+package com.mindcare.backend.service.impl;
+
+import com.mindcare.backend.dto.admin.UserDeletionJobDto;
+import com.mindcare.backend.enums.EDeletionStatus;
+import com.mindcare.backend.exception.ResourceNotFoundException;
+import com.mindcare.backend.model.User;
+import com.mindcare.backend.model.UserDeletionJob;
+import com.mindcare.backend.repository.ConversationRepository;
+import com.mindcare.backend.repository.ConversationSummaryRepository;
+import com.mindcare.backend.repository.DailyEmotionLogRepository;
+import com.mindcare.backend.repository.EmotionRollupRepository;
+import com.mindcare.backend.repository.MessageStore;
+import com.mindcare.backend.repository.UserDeletionJobRepository;
+import com.mindcare.backend.repository.UserRepository;
+import com.mindcare.backend.security.jwt.TokenVersionCache;
+import com.mindcare.backend.security.services.UserCache;
+import com.mindcare.backend.service.interfaces.UserDeletionService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Xóa user theo từng bước, mỗi bước chạy lại được nhiều lần mà không sai (idempotent):
+ * 1. daily_emotion_logs và emotion_rollups của user (mỗi collection một lệnh deleteMany);
+ * 2. lặp: lấy tối đa chunk-size ID cuộc hội thoại, xóa tin nhắn và bản tóm tắt của chúng bằng deleteMany $in,
+ *    rồi mới xóa chính các cuộc hội thoại và ghi tiến độ (nếu bị dừng giữa chừng, lần sau nhóm này được xóa lại);
+ * 3. xóa document User.
+ *
+ * Tác vụ được chạy lại sau khi khởi động lại ứng dụng: định kỳ (và ngay sau khi khởi động) instance tìm các tác vụ
+ * PENDING hoặc RUNNING không cập nhật quá app.users.deletion.stale-after và nhận chúng bằng một lệnh findAndModify,
+ * nên mỗi tác vụ chỉ do một instance chạy.
+ */
+@Service
+public class UserDeletionServiceImpl implements UserDeletionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDeletionServiceImpl.class);
+
+    private final UserDeletionJobRepository userDeletionJobRepository;
+    private final UserRepository userRepository;
+    private final ConversationRepository conversationRepository;
+    private final MessageStore messageStore;
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final DailyEmotionLogRepository dailyEmotionLogRepository;
+    private final EmotionRollupRepository emotionRollupRepository;
+    private final UserCache userCache;
+    private final TokenVersionCache tokenVersionCache;
+    private final int chunkSize;
+    private final Duration staleAfter;
+    private final ExecutorService executor;
+    // Các tác vụ đã được đưa vào executor của instance này (tránh đưa lại trong lúc còn chờ)
+    private final Set<String> queuedJobIds = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopping;
+
+    @Autowired
+    public UserDeletionServiceImpl(UserDeletionJobRepository userDeletionJobRepository,
+                                   UserRepository userRepository,
+                                   ConversationRepository conversationRepository,
+                                   MessageStore messageStore,
+                                   ConversationSummaryRepository conversationSummaryRepository,
+                                   DailyEmotionLogRepository dailyEmotionLogRepository,
+                                   EmotionRollupRepository emotionRollupRepository,
+                                   UserCache userCache,
+                                   TokenVersionCache tokenVersionCache,
+                                   @Value("${app.users.deletion.chunk-size:200}") int chunkSize,
+                                   @Value("${app.users.deletion.stale-after:5m}") Duration staleAfter,
+                                   @Value("${app.users.deletion.threads:1}") int threads) {
+        this.userDeletionJobRepository = userDeletionJobRepository;
+        this.userRepository = userRepository;
+        this.conversationRepository = conversationRepository;
+        this.messageStore = messageStore;
+        this.conversationSummaryRepository = conversationSummaryRepository;
+        this.dailyEmotionLogRepository = dailyEmotionLogRepository;
+        this.emotionRollupRepository = emotionRollupRepository;
+        this.userCache = userCache;
+        this.tokenVersionCache = tokenVersionCache;
+        this.chunkSize = chunkSize;
+        this.staleAfter = staleAfter;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "user-deletion-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public UserDeletionJobDto requestDeletion(String userId) {
+        UserDeletionJob existing = userDeletionJobRepository.findByUserId(userId).orElse(null);
+        if (existing != null) {
+            if (existing.getStatus() == EDeletionStatus.FAILED && userDeletionJobRepository.requeueFailed(existing.getId())) {
+                logger.info("Retrying failed deletion job {} for UserID: {}", existing.getId(), userId);
+                submit(existing.getId());
+            }
+            return getDeletionJob(userId);
+        }
+
+        User user = userCache.findById(userId)
+                .orElseThrow(() -> {
+                    logger.warn("Delete user failed: User with ID {} not found.", userId);
+                    return new ResourceNotFoundException("Không tìm thấy người dùng với ID: " + userId);
+                });
+
+        // Tạo tác vụ trước khi đánh dấu user: nếu instance dừng ngay sau đó, tác vụ vẫn được chạy tiếp
+        UserDeletionJob job;
+        try {
+            job = userDeletionJobRepository.insert(
+                    new UserDeletionJob(userId, user.getUsername(), conversationRepository.countByUserId(userId)));
+        } catch (DuplicateKeyException e) {
+            // Một yêu cầu xóa khác vừa tạo tác vụ cho user này
+            return getDeletionJob(userId);
+        }
+        userRepository.markDeleted(userId);
+        userCache.evict(userId, user.getUsername());
+        tokenVersionCache.markDeleted(userId);
+        logger.warn("User {} (ID: {}) marked as deleted. Deletion job {} created.", user.getUsername(), userId, job.getId());
+
+        submit(job.getId());
+        return mapJobToDto(job);
+    }
+
+    @Override
+    public UserDeletionJobDto getDeletionJob(String userId) {
+        return userDeletionJobRepository.findByUserId(userId)
+                .map(this::mapJobToDto)
+                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy tác vụ xóa cho người dùng với ID: " + userId));
+    }
+
+    // Chạy tiếp các tác vụ bị bỏ dở (instance dừng giữa chừng) hoặc chưa được chạy
+    @Scheduled(initialDelayString = "${app.users.deletion.resume-initial-delay-ms:10000}",
+            fixedDelayString = "${app.users.deletion.resume-interval-ms:60000}")
+    public void resumePendingJobs() {
+        try {
+            List<String> jobIds = userDeletionJobRepository.findResumableIds(staleBefore());
+            if (!jobIds.isEmpty()) {
+                logger.info("Found {} user deletion job(s) to resume", jobIds.size());
+                jobIds.forEach(this::submit);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to look up user deletion jobs to resume: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Tác vụ đang chạy dừng sau nhóm hiện tại và trở về PENDING để instance khác (hoặc lần khởi động sau) chạy tiếp
+        stopping = true;
+        executor.shutdown();
+    }
+
+    private void submit(String jobId) {
+        if (stopping || !queuedJobIds.add(jobId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    run(jobId);
+                } finally {
+                    queuedJobIds.remove(jobId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queuedJobIds.remove(jobId);
+        }
+    }
+
+    private void run(String jobId) {
+        UserDeletionJob job = userDeletionJobRepository.claim(jobId, staleBefore()).orElse(null);
+        if (job == null) {
+            return; // Đã xong, hoặc đang được instance khác chạy
+        }
+        String userId = job.getUserId();
+        logger.info("Deletion job {} started for UserID: {} (attempt {})", jobId, userId, job.getAttempts());
+        try {
+            dailyEmotionLogRepository.deleteAllByUserId(userId);
+            emotionRollupRepository.deleteAllByUserId(userId);
+
+            List<String> conversationIds;
+            while (!(conversationIds = conversationRepository.findIdsByUserId(userId, chunkSize)).isEmpty()) {
+                if (stopping) {
+                    userDeletionJobRepository.release(jobId);
+                    logger.info("Deletion job {} for UserID: {} paused by shutdown", jobId, userId);
+                    return;
+                }
+                messageStore.deleteByConversationIds(conversationIds);
+                conversationSummaryRepository.deleteByConversationIdIn(conversationIds);
+                conversationRepository.deleteAllById(conversationIds);
+                userDeletionJobRepository.recordProgress(jobId, conversationIds.size());
+                logger.debug("Deletion job {}: deleted {} conversation(s) of UserID: {}", jobId, conversationIds.size(), userId);
+            }
+
+            userRepository.deleteById(userId);
+            userCache.evict(userId, job.getUsername());
+            tokenVersionCache.markDeleted(userId);
+            userDeletionJobRepository.markCompleted(jobId);
+            logger.info("Deletion job {} completed: UserID: {} and all associated data deleted", jobId, userId);
+        } catch (Exception e) {
+            logger.error("Deletion job {} for UserID: {} failed:", jobId, userId, e);
+            userDeletionJobRepository.markFailed(jobId, e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    private LocalDateTime staleBefore() {
+        return LocalDateTime.now().minus(staleAfter);
+    }
+
+    private UserDeletionJobDto mapJobToDto(UserDeletionJob job) {
+        return new UserDeletionJobDto(
+                job.getId(),
+                job.getUserId(),
+                job.getUsername(),
+                job.getStatus().name(),
+                job.getConversationsTotal(),
+                job.getConversationsDeleted(),
+                job.getAttempts(),
+                job.getLastError(),
+                job.getCreatedAt(),
+                job.getUpdatedAt(),
+                job.getCompletedAt()
+        );
+    }
+}
@@ -6,9 +6,11 @@ import com.mindcare.backend.dto.user.UserUpdateProfileRequestDto;
 import com.mindcare.backend.exception.BadRequestException;
 import com.mindcare.backend.exception.ResourceNotFoundException;
 import com.mindcare.backend.exception.UserAlreadyExistsException;
-import com.mindcare.backend.model.Role;
+import com.mindcare.backend.enums.ERole;
 import com.mindcare.backend.model.User;
 import com.mindcare.backend.repository.UserRepository;
+import com.mindcare.backend.security.jwt.TokenVersionCache;
+import com.mindcare.backend.security.services.UserCache;
 import com.mindcare.backend.service.interfaces.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,6 +22,7 @@ import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,18 +32,23 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenVersionCache tokenVersionCache;
+    private final UserCache userCache;
 
     @Autowired
-    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                           TokenVersionCache tokenVersionCache, UserCache userCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.tokenVersionCache = tokenVersionCache;
+        this.userCache = userCache;
     }
 
     @Override
     @Transactional(readOnly = true)
     public UserProfileDto getUserProfile(String userId) {
         logger.debug("Fetching profile for UserID: {}", userId);
-        User user = userRepository.findById(userId)
+        User user = userCache.findById(userId)
                 .orElseThrow(() -> {
                     logger.warn("UserProfile requested for non-existent UserID: {}", userId);
                     return new ResourceNotFoundException("Không tìm thấy người dùng với id: " + userId);
@@ -52,13 +60,15 @@ public class UserServiceImpl implements UserService {
     @Transactional
     public UserProfileDto updateUserProfile(String userId, UserUpdateProfileRequestDto updateRequest) {
         logger.info("Updating profile for UserID: {}", userId);
-        User user = userRepository.findById(userId)
+        User user = findUserForUpdate(userId)
                 .orElseThrow(() -> {
                     logger.warn("Update profile attempt for non-existent UserID: {}", userId);
                     return new ResourceNotFoundException("Không tìm thấy người dùng với id: " + userId);
                 });
 
         boolean updated = false;
+        boolean usernameChanged = false;
+        String previousUsername = user.getUsername();
 
         // Cập nhật username nếu được cung cấp và khác với username hiện tại
         if (StringUtils.hasText(updateRequest.getUsername()) && !user.getUsername().equals(updateRequest.getUsername())) {
@@ -69,6 +79,9 @@ public class UserServiceImpl implements UserService {
                 throw new UserAlreadyExistsException("Lỗi: Tên đăng nhập '" + updateRequest.getUsername() + "' đã được sử dụng!");
             }
             user.setUsername(updateRequest.getUsername());
+            // Subject của các JWT đã cấp là username cũ: thu hồi chúng (trước đây token cũ cũng không dùng được nữa)
+            user.setTokenVersion(user.getTokenVersion() + 1);
+            usernameChanged = true;
             updated = true;
             logger.info("Username updated for UserID: {} to: {}", userId, updateRequest.getUsername());
         }
@@ -84,6 +97,10 @@ public class UserServiceImpl implements UserService {
         if (updated) {
             user.setUpdatedAt(LocalDateTime.now());
             userRepository.save(user);
+            userCache.evict(userId, previousUsername, user.getUsername());
+            if (usernameChanged) {
+                tokenVersionCache.update(userId, user.getTokenVersion());
+            }
             logger.info("Profile updated successfully for UserID: {}", userId);
         } else {
             logger.info("No profile changes detected for UserID: {}", userId);
@@ -96,7 +113,7 @@ public class UserServiceImpl implements UserService {
     @Transactional
     public void changePassword(String userId, ChangePasswordRequest changePasswordRequest) {
         logger.info("Attempting to change password for UserID: {}", userId);
-        User user = userRepository.findById(userId)
+        User user = findUserForUpdate(userId)
                 .orElseThrow(() -> {
                     logger.warn("Change password attempt for non-existent UserID: {}", userId);
                     return new ResourceNotFoundException("Không tìm thấy người dùng với id: " + userId);
@@ -118,11 +135,20 @@ public class UserServiceImpl implements UserService {
 
         // Cập nhật mật khẩu mới đã mã hóa
         user.setPassword(passwordEncoder.encode(changePasswordRequest.getNewPassword()));
+        user.setTokenVersion(user.getTokenVersion() + 1); // Thu hồi các JWT đã cấp
         user.setUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        userCache.evict(userId, user.getUsername());
+        tokenVersionCache.update(userId, user.getTokenVersion());
         logger.info("Password changed successfully for UserID: {}", userId);
     }
 
+    // Các thao tác ghi đọc User trực tiếp từ DB, không qua UserCache: bản trong cache có thể cũ (mật khẩu,
+    // token_version hoặc cờ deleted vừa được instance khác thay đổi) và save() sẽ ghi đè các thay đổi đó
+    private Optional<User> findUserForUpdate(String userId) {
+        return userRepository.findById(userId).filter(user -> !user.isDeleted());
+    }
+
     // Phương thức private helper để map User entity sang UserProfileDto
     private UserProfileDto mapUserToUserProfileDto(User user) {
         if (user == null) {
@@ -131,7 +157,7 @@ public class UserServiceImpl implements UserService {
             throw new ResourceNotFoundException("Không thể tìm thấy thông tin người dùng để hiển thị.");
         }
         List<String> roleNames = user.getRoles().stream()
-                .map(role -> role.getName().name())
+                .map(ERole::name)
                 .collect(Collectors.toList());
         return new UserProfileDto(
                 user.getId(),
@@ -1,9 +1,12 @@
 package com.mindcare.backend.service.interfaces;
 
+import com.mindcare.backend.dto.admin.AdminUserPageDto;
 import com.mindcare.backend.dto.admin.AdminUserUpdateRequestDto;
 import com.mindcare.backend.dto.admin.AdminUserViewDto;
+import com.mindcare.backend.dto.admin.UserDeletionJobDto;
 import com.mindcare.backend.dto.conversation.ConversationDto;
 import com.mindcare.backend.dto.conversation.MessageDto;
+import com.mindcare.backend.dto.conversation.MessagePageDto;
 import com.mindcare.backend.dto.emotion.EmotionStatsResponseDto; // Sử dụng lại DTO này
 import jakarta.validation.Valid;
 
@@ -15,6 +18,12 @@ public interface AdminService {
     // Lấy danh sách tất cả người dùng trong hệ thống.
     List<AdminUserViewDto> getAllUsers();
 
+    /**
+     * Danh sách người dùng theo trang, có thể lọc theo tiền tố username.
+     * sort có dạng "trường[,asc|desc]" với trường là username hoặc createdAt; các tham số đều không bắt buộc.
+     */
+    AdminUserPageDto getUsersPage(String usernamePrefix, Integer page, Integer size, String sort);
+
     // Lấy thông tin chi tiết của một người dùng theo ID (dành cho admin)
     AdminUserViewDto getUserByIdForAdmin(String userId);
 
@@ -23,9 +32,12 @@ public interface AdminService {
 
     /**
      * Xóa một người dùng và tất cả dữ liệu liên quan của họ (conversations, messages, emotion logs).
-     * Cần thực hiện cẩn thận.
+     * User bị đánh dấu xóa ngay; dữ liệu được xóa bởi một tác vụ chạy nền, trả về trạng thái của tác vụ đó.
      */
-    void deleteUserAndAssociatedData(String userId);
+    UserDeletionJobDto deleteUserAndAssociatedData(String userId);
+
+    // Trạng thái và tiến độ tác vụ xóa người dùng
+    UserDeletionJobDto getUserDeletionJob(String userId);
 
     // Admin xem danh sách các cuộc hội thoại của một người dùng cụ thể.
     List<ConversationDto> getUserConversationsForAdmin(String targetUserId);
@@ -36,5 +48,8 @@ public interface AdminService {
     // Lấy tất cả tin nhắn của một cuộc hội thoại cụ thể
     List<MessageDto> getMessagesForConversation(String conversationId);
 
+    // Lấy tin nhắn của một cuộc hội thoại theo trang bằng cursor (xem ConversationService.getConversationMessagesPage)
+    MessagePageDto getMessagesForConversationPage(String conversationId, String before, String after, Integer limit);
+
     AdminUserViewDto createUserByAdmin(@Valid AdminUserUpdateRequestDto createRequest);
 }
\ No newline at end of file
@@ -1,10 +1,25 @@
 package com.mindcare.backend.service.interfaces;
 
 import com.mindcare.backend.dto.conversation.MessageDto; // Sử dụng MessageDto để truyền lịch sử
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
 import java.util.List;
 
 public interface AiChatService {
 
     // Lấy phản hồi từ AI dựa trên lịch sử hội thoại và tin nhắn mới của người dùng.
     String getAiResponse(String conversationId, List<MessageDto> conversationHistory, String userMessage);
+
+    /**
+     * Phiên bản non-blocking của getAiResponse: không giữ thread nào trong lúc model đang sinh câu trả lời.
+     * Lỗi được báo qua AiServiceException.
+     */
+    Mono<String> getAiResponseAsync(String conversationId, List<MessageDto> conversationHistory, String userMessage);
+
+    /**
+     * Giống getAiResponse nhưng trả về từng đoạn (token) của câu trả lời ngay khi model sinh ra.
+     * Flux hoàn thành khi model trả lời xong; lỗi được báo qua AiServiceException.
+     */
+    Flux<String> streamAiResponse(String conversationId, List<MessageDto> conversationHistory, String userMessage);
 }
\ No newline at end of file
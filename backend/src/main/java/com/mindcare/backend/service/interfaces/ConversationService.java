@@ -1,9 +1,13 @@
 package com.mindcare.backend.service.interfaces;
 
+import com.mindcare.backend.dto.conversation.AiReplyStatusDto;
 import com.mindcare.backend.dto.conversation.ConversationDto;
 import com.mindcare.backend.dto.conversation.MessageDto;
+import com.mindcare.backend.dto.conversation.MessagePageDto;
 import com.mindcare.backend.dto.conversation.MessageRequest;
+import com.mindcare.backend.dto.conversation.MessageStreamEventDto;
 import jakarta.validation.constraints.Size;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.Optional; // Sử dụng Optional cho title
@@ -27,9 +31,31 @@ public interface ConversationService {
      */
     MessageDto saveUserMessage(String userId, String conversationId, MessageRequest messageRequest);
 
+    /**
+     * Lưu tin nhắn của người dùng rồi stream câu trả lời của AI theo từng token.
+     * Sự kiện đầu tiên là tin nhắn user đã lưu, tiếp theo là các token,
+     * cuối cùng là tin nhắn AI hoàn chỉnh (đã được lưu) hoặc một sự kiện lỗi.
+     */
+    Flux<MessageStreamEventDto> streamUserMessage(String userId, String conversationId, MessageRequest messageRequest);
+
+    /**
+     * Lưu tin nhắn của người dùng và trả về ngay, câu trả lời của AI được sinh ở chế độ bất đồng bộ.
+     * Client poll trạng thái câu trả lời bằng getAiReplyStatus với ID của tin nhắn vừa lưu.
+     */
+    MessageDto saveUserMessageAsync(String userId, String conversationId, MessageRequest messageRequest);
+
+    // Lấy trạng thái câu trả lời AI cho một tin nhắn của người dùng (PENDING, COMPLETED, FAILED).
+    AiReplyStatusDto getAiReplyStatus(String userId, String conversationId, String userMessageId);
+
     // Lấy lịch sử tin nhắn của một cuộc hội thoại.
     List<MessageDto> getConversationMessages(String userId, String conversationId);
 
+    /**
+     * Lấy lịch sử tin nhắn theo trang bằng cursor (before: cũ hơn, after: mới hơn; không có cursor: trang mới nhất).
+     * limit bị giới hạn bởi app.messages.page.max-size.
+     */
+    MessagePageDto getConversationMessagesPage(String userId, String conversationId, String before, String after, Integer limit);
+
     // Xóa một cuộc hội thoại và tất cả các tin nhắn liên quan.
     void deleteConversation(String userId, String conversationId);
 
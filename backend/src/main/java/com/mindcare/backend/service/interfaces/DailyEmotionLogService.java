@@ -2,6 +2,7 @@ package com.mindcare.backend.service.interfaces;
 
 import com.mindcare.backend.dto.emotion.DailyEmotionLogDto;
 import com.mindcare.backend.dto.emotion.DailyEmotionLogRequest;
+import com.mindcare.backend.dto.emotion.EmotionStatsResponseDto;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -21,7 +22,13 @@ public interface DailyEmotionLogService {
 
     /**
      * Lấy thống kê tóm tắt số lần xuất hiện của mỗi loại cảm xúc
-     * của người dùng trong một khoảng thời gian.
+     * của người dùng trong một khoảng thời gian (tính bằng aggregation trên MongoDB).
      */
     Map<String, Long> getEmotionStatsSummary(String userId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Danh sách log và thống kê tóm tắt trong cùng một lần đọc.
+     * includeLogs = false: chỉ trả về thống kê (dailyLogs rỗng), phù hợp với khoảng thời gian dài.
+     */
+    EmotionStatsResponseDto getEmotionStats(String userId, LocalDate startDate, LocalDate endDate, boolean includeLogs);
 }
\ No newline at end of file
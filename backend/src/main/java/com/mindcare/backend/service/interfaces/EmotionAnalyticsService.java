@@ -0,0 +1,27 @@
+package com.mindcare.backend.service.interfaces;
+
+import com.mindcare.backend.dto.admin.EmotionCohortTrendDto;
+import com.mindcare.backend.dto.admin.EmotionDailyShareDto;
+import com.mindcare.backend.dto.admin.NegativeStreakDto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Thống kê cảm xúc trên toàn bộ người dùng cho admin, trong khoảng ngày [startDate, endDate] (bao gồm hai đầu).
+ * Kết quả được cache theo khoảng ngày (và tham số) trong một thời gian ngắn.
+ */
+public interface EmotionAnalyticsService {
+
+    // Tỉ lệ mỗi cảm xúc theo từng ngày
+    List<EmotionDailyShareDto> getDailyEmotionShares(LocalDate startDate, LocalDate endDate);
+
+    // Xu hướng cảm xúc theo tháng của từng nhóm người dùng (nhóm theo tháng đăng ký)
+    List<EmotionCohortTrendDto> getCohortTrends(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * Người dùng có ít nhất minDays ngày liên tiếp ghi cảm xúc tiêu cực, sắp xếp theo độ dài chuỗi giảm dần
+     * (tối đa limit người).
+     */
+    List<NegativeStreakDto> getNegativeStreaks(LocalDate startDate, LocalDate endDate, Integer minDays, Integer limit);
+}
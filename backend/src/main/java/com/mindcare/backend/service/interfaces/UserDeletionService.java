@@ -0,0 +1,18 @@
+package com.mindcare.backend.service.interfaces;
+
+import com.mindcare.backend.dto.admin.UserDeletionJobDto;
+
+/**
+ * Xóa người dùng và toàn bộ dữ liệu liên quan bằng tác vụ chạy nền (collection "user_deletion_jobs").
+ */
+public interface UserDeletionService {
+
+    /**
+     * Đánh dấu user đã bị xóa ngay lập tức (không đăng nhập được, mọi JWT bị từ chối) và tạo tác vụ xóa dữ liệu.
+     * Nếu user đã có tác vụ thì trả về tác vụ đó; tác vụ FAILED được chạy lại.
+     */
+    UserDeletionJobDto requestDeletion(String userId);
+
+    // Trạng thái và tiến độ tác vụ xóa của một user
+    UserDeletionJobDto getDeletionJob(String userId);
+}
@@ -0,0 +1,99 @@
+package com.mindcare.backend.benchmark;
+
+import com.mindcare.backend.security.jwt.JwtUtils;
+import com.mindcare.backend.security.jwt.JwtValidationResult;
+import com.mindcare.backend.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import javax.crypto.SecretKey;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Đo chi phí xác thực JWT trong JwtAuthenticationFilter cho mỗi request:
+ * - legacy: cách cũ, giải mã secret và dựng JwtParser mới rồi parse token hai lần (validate + đọc claims);
+ * - single-parse: JwtUtils.parseAndValidate với key/parser dựng sẵn, không dùng cache (max-entries = 0);
+ * - cached: như single-parse, token đã xác thực được lấy lại từ cache theo SHA-256.
+ *
+ * Không cần MongoDB. Chạy bằng main() của lớp này sau khi test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class JwtFilterBenchmark {
+
+    private static final int EXPIRATION_MS = 86400000;
+
+    @Param({"legacy", "single-parse", "cached"})
+    public String validation;
+
+    // Key HS512 tạo mới cho mỗi lần chạy (Base64, cùng định dạng với jwt.secret)
+    private String secret;
+    private JwtUtils jwtUtils;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        secret = Encoders.BASE64.encode(Jwts.SIG.HS512.key().build().getEncoded());
+        jwtUtils = new JwtUtils(secret, EXPIRATION_MS, "cached".equals(validation) ? 10000 : 0);
+        UserDetailsImpl principal = new UserDetailsImpl("benchmark-id", "benchmark-user", null, null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")), 0);
+        token = jwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+
+    @Benchmark
+    public UserDetailsImpl authenticateRequest() {
+        Claims claims;
+        if ("legacy".equals(validation)) {
+            claims = legacyValidateAndParse(token);
+        } else {
+            JwtValidationResult result = jwtUtils.parseAndValidate(token);
+            claims = result.isValid() ? result.claims() : null;
+        }
+        return claims != null ? JwtUtils.buildUserDetailsFromClaims(claims) : null;
+    }
+
+    // Cách JwtUtils làm trước đây: mỗi lần gọi đều giải mã secret và dựng parser mới
+    private Claims legacyValidateAndParse(String token) {
+        Jwts.parser().verifyWith(legacyKey()).build().parse(token);
+        return Jwts.parser()
+                .verifyWith(legacyKey())
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+    }
+
+    private SecretKey legacyKey() {
+        return Keys.hmacShaKeyFor(Decoders.BASE64.decode(secret));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,130 @@
+package com.mindcare.backend.benchmark;
+
+import com.mindcare.backend.model.Message;
+import com.mindcare.backend.repository.BucketMessageStore;
+import com.mindcare.backend.repository.CollectionMessageStore;
+import com.mindcare.backend.repository.MessageRepository;
+import com.mindcare.backend.repository.MessageRepositoryImpl;
+import com.mindcare.backend.repository.MessageStore;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh hai cách lưu tin nhắn (collection "messages" và "message_buckets") cho các thao tác của một lượt chat:
+ * thêm tin nhắn và đọc các tin nhắn gần nhất để dựng ngữ cảnh / hiển thị lịch sử.
+ *
+ * Cần MongoDB (mặc định mongodb://localhost:27017, đổi bằng -Dbenchmark.mongo.uri=...). Dữ liệu được ghi vào
+ * database riêng "mindcare_benchmark" và bị xóa khi kết thúc. Chạy bằng main() của lớp này sau khi test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class MessageStoreBenchmark {
+
+    private static final String DATABASE = "mindcare_benchmark";
+
+    @Param({"collection", "bucket"})
+    public String storage;
+
+    @Param({"200", "2000"})
+    public int historySize;
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+    private MessageStore messageStore;
+    private String conversationId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mongoClient = MongoClients.create(System.getProperty("benchmark.mongo.uri", "mongodb://localhost:27017"));
+        mongoTemplate = new MongoTemplate(mongoClient, DATABASE);
+        mongoTemplate.indexOps("messages").ensureIndex(new Index()
+                .on("conversation_id", Sort.Direction.ASC).on("timestamp", Sort.Direction.ASC).on("_id", Sort.Direction.ASC));
+        mongoTemplate.indexOps("message_buckets").ensureIndex(new Index()
+                .on("conversation_id", Sort.Direction.ASC).on("count", Sort.Direction.ASC));
+        mongoTemplate.indexOps("message_buckets").ensureIndex(new Index()
+                .on("conversation_id", Sort.Direction.ASC).on("last_ts", Sort.Direction.DESC));
+
+        if ("bucket".equals(storage)) {
+            messageStore = new BucketMessageStore(mongoTemplate, 100);
+        } else {
+            MessageRepository repository = new MongoRepositoryFactory(mongoTemplate)
+                    .getRepository(MessageRepository.class, RepositoryFragments.just(new MessageRepositoryImpl(mongoTemplate)));
+            messageStore = new CollectionMessageStore(repository);
+        }
+
+        conversationId = "benchmark-" + UUID.randomUUID();
+        for (int i = 0; i < historySize; i++) {
+            messageStore.append(new Message(conversationId, i % 2 == 0 ? "USER" : "AI", "Tin nhắn mẫu số " + i + " trong lịch sử hội thoại."));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n[%s, historySize=%d] %d message(s) stored in %d document(s)%n",
+                storage, historySize, messageStore.count(conversationId), documentsForFullHistory());
+        mongoTemplate.getDb().drop();
+        mongoClient.close();
+    }
+
+    // Một lượt chat: lưu tin nhắn của người dùng và câu trả lời của AI
+    @Benchmark
+    public Message appendTurn() {
+        messageStore.append(new Message(conversationId, "USER", "Hôm nay mình thấy hơi lo lắng."));
+        return messageStore.append(new Message(conversationId, "AI", "Mình ở đây để lắng nghe bạn. Điều gì khiến bạn lo lắng vậy?"));
+    }
+
+    // Đọc 40 tin nhắn gần nhất (kích thước cửa sổ ngữ cảnh mặc định)
+    @Benchmark
+    public List<Message> readRecentContext() {
+        return messageStore.findLatest(conversationId, 40);
+    }
+
+    // Đọc toàn bộ lịch sử (API cũ không phân trang)
+    @Benchmark
+    public List<Message> readFullHistory() {
+        return messageStore.findAll(conversationId);
+    }
+
+    // Số document MongoDB phải đọc cho mỗi lần lấy toàn bộ lịch sử (in ra khi kết thúc để đối chiếu)
+    private long documentsForFullHistory() {
+        String collection = "bucket".equals(storage) ? "message_buckets" : "messages";
+        return mongoTemplate.count(Query.query(Criteria.where("conversation_id").is(conversationId)), collection);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MessageStoreBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,154 @@
+package com.mindcare.backend.benchmark;
+
+import com.mindcare.backend.enums.ERole;
+import com.mindcare.backend.model.Role;
+import com.mindcare.backend.model.User;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.DBRef;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Đo chi phí của việc nạp User trong mỗi request đã xác thực (UserDetailsServiceImpl.loadUserByUsername):
+ * - dbref: cách lưu cũ, roles là @DBRef tới collection "roles" nên phải resolve thêm;
+ * - embedded: cách lưu hiện tại, tên vai trò nằm trong document "role_names".
+ *
+ * Ngoài thời gian, benchmark đếm số lệnh find gửi tới MongoDB cho mỗi lần nạp và in ra khi kết thúc.
+ * Cần MongoDB (mặc định mongodb://localhost:27017, đổi bằng -Dbenchmark.mongo.uri=...). Dữ liệu được ghi vào
+ * database riêng "mindcare_benchmark" và bị xóa khi kết thúc. Chạy bằng main() của lớp này sau khi test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class UserLookupBenchmark {
+
+    private static final String DATABASE = "mindcare_benchmark";
+    private static final String USERNAME = "benchmark-user";
+
+    @Param({"dbref", "embedded"})
+    public String roleStorage;
+
+    private final AtomicLong findCommands = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+
+    private MongoClient mongoClient;
+    private MongoTemplate mongoTemplate;
+
+    // Cách lưu cũ của User (trước khi chuyển sang role_names), chỉ dùng cho benchmark
+    @Document(collection = "legacy_users")
+    static class LegacyUser {
+        @Id
+        String id;
+
+        @Field("username")
+        String username;
+
+        @DBRef
+        @Field("roles")
+        Set<Role> roles = new HashSet<>();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        CommandListener countFinds = new CommandListener() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                if ("find".equals(event.getCommandName())) {
+                    findCommands.incrementAndGet();
+                }
+            }
+        };
+        mongoClient = MongoClients.create(MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(System.getProperty("benchmark.mongo.uri", "mongodb://localhost:27017")))
+                .addCommandListener(countFinds)
+                .build());
+        mongoTemplate = new MongoTemplate(mongoClient, DATABASE);
+
+        Role userRole = mongoTemplate.insert(new Role(ERole.ROLE_USER));
+        Role adminRole = mongoTemplate.insert(new Role(ERole.ROLE_ADMIN));
+
+        LegacyUser legacyUser = new LegacyUser();
+        legacyUser.username = USERNAME;
+        legacyUser.roles.add(userRole);
+        legacyUser.roles.add(adminRole);
+        mongoTemplate.insert(legacyUser);
+
+        User user = new User(USERNAME, "{noop}password");
+        user.getRoles().add(ERole.ROLE_USER);
+        user.getRoles().add(ERole.ROLE_ADMIN);
+        mongoTemplate.insert(user);
+
+        findCommands.set(0);
+        lookups.set(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long count = lookups.get();
+        if (count > 0) {
+            System.out.printf("%n[%s] %.2f find command(s) per user lookup (%d lookups)%n",
+                    roleStorage, (double) findCommands.get() / count, count);
+        }
+        mongoTemplate.getDb().drop();
+        mongoClient.close();
+    }
+
+    // Tương đương findByUsername + UserDetailsImpl.build: nạp user và dựng danh sách quyền
+    @Benchmark
+    public List<SimpleGrantedAuthority> loadUserAuthorities() {
+        lookups.incrementAndGet();
+        Query byUsername = Query.query(Criteria.where("username").is(USERNAME));
+        if ("dbref".equals(roleStorage)) {
+            LegacyUser user = mongoTemplate.findOne(byUsername, LegacyUser.class);
+            return user.roles.stream()
+                    .map(role -> new SimpleGrantedAuthority(role.getName().name()))
+                    .collect(Collectors.toList());
+        }
+        User user = mongoTemplate.findOne(byUsername, User.class);
+        return user.getRoles().stream()
+                .map(role -> new SimpleGrantedAuthority(role.name()))
+                .collect(Collectors.toList());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(UserLookupBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,108 @@
+package com.mindcare.backend.config;
+
+import com.mindcare.backend.model.Conversation;
+import com.mindcare.backend.model.Message;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Kiểm tra các truy vấn chính dùng index compound thay vì sort trong bộ nhớ (không có stage SORT trong winning plan).
+ * Cần MongoDB đang chạy, giống BackendApplicationTests.
+ */
+@SpringBootTest(properties = {"ai.ollama.preload-on-startup=false", "ai.summary.enabled=false"})
+class MongoIndexManagerTests {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoIndexManager mongoIndexManager;
+
+    private String conversationId;
+    private String userId;
+
+    @BeforeEach
+    void setUp() {
+        mongoIndexManager.ensureDeclaredIndexes();
+        userId = "index-test-" + UUID.randomUUID();
+        Conversation conversation = mongoTemplate.insert(new Conversation(userId, "Index test", "test-model"));
+        conversationId = conversation.getId();
+        for (int i = 0; i < 5; i++) {
+            mongoTemplate.insert(new Message(conversationId, i % 2 == 0 ? "USER" : "AI", "message " + i));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        mongoTemplate.remove(Query.query(Criteria.where("conversationId").is(conversationId)), Message.class);
+        mongoTemplate.remove(Query.query(Criteria.where("userId").is(userId)), Conversation.class);
+    }
+
+    @Test
+    void messageHistoryQueryUsesIndexForSort() {
+        Document plan = explain("messages",
+                new Document("conversation_id", conversationId),
+                new Document("timestamp", 1));
+        assertUsesIndexWithoutSort(plan, "conversation_timestamp_idx");
+    }
+
+    @Test
+    void messageKeysetPageUsesIndexForSort() {
+        Date cursorTimestamp = new Date();
+        Document filter = new Document("conversation_id", conversationId)
+                .append("$or", List.of(
+                        new Document("timestamp", new Document("$lt", cursorTimestamp)),
+                        new Document("timestamp", cursorTimestamp).append("_id", new Document("$lt", new ObjectId()))));
+        Document plan = explain("messages", filter, new Document("timestamp", -1).append("_id", -1));
+        assertUsesIndexWithoutSort(plan, "conversation_timestamp_idx");
+    }
+
+    @Test
+    void conversationListQueryUsesIndexForSort() {
+        Document plan = explain("conversations",
+                new Document("user_id", userId),
+                new Document("updated_at", -1));
+        assertUsesIndexWithoutSort(plan, "user_updated_idx");
+    }
+
+    private Document explain(String collection, Document filter, Document sort) {
+        Document command = new Document("explain", new Document("find", collection).append("filter", filter).append("sort", sort))
+                .append("verbosity", "queryPlanner");
+        Document result = mongoTemplate.getDb().runCommand(command);
+        return result.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+    }
+
+    private static void assertUsesIndexWithoutSort(Document winningPlan, String indexName) {
+        assertFalse(containsStage(winningPlan, "SORT"), "Winning plan should not sort in memory: " + winningPlan.toJson());
+        assertTrue(winningPlan.toJson().contains("\"" + indexName + "\""), "Winning plan should use " + indexName + ": " + winningPlan.toJson());
+    }
+
+    // Tìm đệ quy trong cây plan (bao gồm inputStage/inputStages và queryPlan của SBE)
+    private static boolean containsStage(Object node, String stage) {
+        if (node instanceof Document document) {
+            if (stage.equals(document.get("stage"))) {
+                return true;
+            }
+            return document.values().stream().anyMatch(value -> containsStage(value, stage));
+        }
+        if (node instanceof List<?> list) {
+            return list.stream().anyMatch(value -> containsStage(value, stage));
+        }
+        return false;
+    }
+}
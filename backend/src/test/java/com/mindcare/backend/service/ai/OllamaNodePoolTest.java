@@ -0,0 +1,160 @@
+package com.mindcare.backend.service.ai;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class OllamaNodePoolTest {
+
+    private StubOllama nodeA;
+    private StubOllama nodeB;
+
+    @BeforeEach
+    void startStubs() throws IOException {
+        nodeA = new StubOllama();
+        nodeB = new StubOllama();
+    }
+
+    @AfterEach
+    void stopStubs() {
+        nodeA.stop();
+        nodeB.stop();
+    }
+
+    @Test
+    void routesToNodeWithFewestOutstandingRequests() {
+        OllamaNodePool pool = newPool(false);
+
+        // Giữ một request treo trên node A (khi các node tải bằng nhau, node khai báo trước được chọn)
+        Sinks.Empty<Void> hold = holdRequest(pool);
+        assertEquals(1, pool.outstandingRequests(nodeA.url()));
+
+        // Request tiếp theo phải tới node B đang rảnh
+        assertEquals(nodeB.url(), pool.select(null).baseUrl());
+        pool.execute(null, client -> client.get().uri("/api/tags").retrieve().bodyToMono(String.class))
+                .block(Duration.ofSeconds(5));
+        assertEquals(0, nodeA.tagRequests.get());
+        assertEquals(1, nodeB.tagRequests.get());
+        // doFinally của request có thể chạy sau khi block() trả về: chờ bộ đếm của node B về 0
+        awaitOutstanding(pool, nodeB.url(), 0);
+
+        // Khi request treo kết thúc, hai node lại tải bằng nhau
+        hold.tryEmitEmpty();
+        awaitOutstanding(pool, nodeA.url(), 0);
+        assertEquals(nodeA.url(), pool.select(null).baseUrl());
+    }
+
+    @Test
+    void ejectsNodeThatFailsHealthCheckAndRestoresItLater() {
+        OllamaNodePool pool = newPool(false);
+
+        nodeB.healthy = false;
+        pool.probeNodes();
+        assertEquals(List.of(nodeA.url()), pool.availableBaseUrls());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(nodeA.url(), pool.select(null).baseUrl());
+        }
+
+        nodeB.healthy = true;
+        pool.probeNodes();
+        assertEquals(List.of(nodeA.url(), nodeB.url()), pool.availableBaseUrls());
+    }
+
+    @Test
+    void ejectsNodeOnConnectionFailure() {
+        OllamaNodePool pool = newPool(false);
+        String deadUrl = nodeB.url();
+        nodeB.stop();
+
+        // Giữ node A bận để request tiếp theo chắc chắn được gửi tới node B (không phụ thuộc thời điểm doFinally chạy)
+        Sinks.Empty<Void> hold = holdRequest(pool);
+        assertEquals(deadUrl, pool.select(null).baseUrl());
+
+        // Node bị loại trong doOnError, trước khi lỗi tới subscriber
+        pool.execute(null, client -> client.get().uri("/api/tags").retrieve().bodyToMono(String.class))
+                .onErrorResume(e -> Mono.empty())
+                .block(Duration.ofSeconds(5));
+        assertEquals(List.of(nodeA.url()), pool.availableBaseUrls());
+
+        hold.tryEmitEmpty();
+        assertNotEquals(deadUrl, pool.select(null).baseUrl());
+    }
+
+    @Test
+    void keepsConversationOnSameNodeWhenAffinityEnabled() {
+        OllamaNodePool pool = newPool(true);
+
+        for (String conversationId : List.of("conv-1", "conv-2", "conv-3", "conv-4")) {
+            String first = pool.select(conversationId).baseUrl();
+            for (int i = 0; i < 5; i++) {
+                assertEquals(first, pool.select(conversationId).baseUrl());
+            }
+        }
+    }
+
+    // Một request treo (không kết thúc cho tới khi sink được emit) trên node ít tải nhất
+    private static Sinks.Empty<Void> holdRequest(OllamaNodePool pool) {
+        Sinks.Empty<Void> hold = Sinks.empty();
+        pool.execute(null, client -> hold.asMono()).subscribe();
+        return hold;
+    }
+
+    private static void awaitOutstanding(OllamaNodePool pool, String baseUrl, int expected) {
+        await().atMost(Duration.ofSeconds(5))
+                .untilAsserted(() -> assertEquals(expected, pool.outstandingRequests(baseUrl)));
+    }
+
+    private OllamaNodePool newPool(boolean affinity) {
+        return new OllamaNodePool(WebClient.builder(), nodeA.url() + "," + nodeB.url(),
+                Duration.ofSeconds(2), Duration.ofMinutes(5), affinity, 2, new SimpleMeterRegistry());
+    }
+
+    // Server HTTP giả lập Ollama: chỉ trả lời /api/tags
+    private static final class StubOllama {
+        private final HttpServer server;
+        private final AtomicInteger tagRequests = new AtomicInteger();
+        private volatile boolean healthy = true;
+        private boolean stopped;
+
+        private StubOllama() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/api/tags", exchange -> {
+                tagRequests.incrementAndGet();
+                byte[] body = "{\"models\":[]}".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(healthy ? 200 : 503, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+        }
+
+        private String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        private void stop() {
+            if (!stopped) {
+                stopped = true;
+                server.stop(0);
+            }
+        }
+    }
+}